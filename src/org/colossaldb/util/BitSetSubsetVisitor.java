@@ -0,0 +1,34 @@
+package org.colossaldb.util;
+
+import java.util.BitSet;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Callback used by {@link SubsetUtil} to hand out subsets of more than 64 elements as bit sets.
+ */
+public interface BitSetSubsetVisitor {
+    /**
+     * Visit one subset. The bit set is reused for the next subset, so it must be copied if it is to be kept and it
+     * must not be modified.
+     *
+     * @param subset bit i is set when element i is in the subset.
+     * @return true to continue the enumeration, false to stop it.
+     */
+    boolean visit(BitSet subset);
+}
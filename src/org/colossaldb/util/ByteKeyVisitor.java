@@ -0,0 +1,32 @@
+package org.colossaldb.util;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Callback used by {@link MappedSortedKeyArray} to hand out the keys of a range scan.
+ */
+public interface ByteKeyVisitor {
+    /**
+     * Visit one key. The buffer is reused for the next key, so it must be copied if it is to be kept.
+     *
+     * @param index position of the key in the array.
+     * @param key   the key bytes.
+     * @return true to continue the scan, false to stop it.
+     */
+    boolean visit(long index, byte[] key);
+}
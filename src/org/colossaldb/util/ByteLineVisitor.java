@@ -0,0 +1,32 @@
+package org.colossaldb.util;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Callback used by {@link FileUtil} to hand out the lines of a byte buffer or file without decoding them.
+ */
+public interface ByteLineVisitor {
+    /**
+     * Visit one line. The slice is reused for the next line, so it must be copied (toString, toByteArray) if it is to
+     * be kept.
+     *
+     * @param line view of the line bytes, without the line terminator.
+     * @return true to continue the scan, false to stop it.
+     */
+    boolean visit(ByteSlice line);
+}
@@ -0,0 +1,129 @@
+package org.colossaldb.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * View of a range of bytes of a ByteBuffer. Nothing is copied until toString or toByteArray is called.
+ * <p/>
+ * As a CharSequence every byte is one character (ISO-8859-1), which is exact for ASCII text and good enough to match
+ * ASCII prefixes or delimiters in UTF-8 text. Use {@link #toString(Charset)} to decode the bytes properly.
+ */
+public class ByteSlice implements CharSequence {
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * @param buffer the bytes. Absolute gets are used, the position and limit of the buffer are not changed.
+     * @param offset index of the first byte in the buffer
+     * @param length number of bytes
+     */
+    public ByteSlice(ByteBuffer buffer, int offset, int length) {
+        set(buffer, offset, length);
+    }
+
+    ByteSlice set(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.capacity())
+            throw new IndexOutOfBoundsException("Offset: " + offset + ", Length: " + length + ", Capacity: " + buffer.capacity());
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (byteAt(index) & 0xff);
+    }
+
+    public byte byteAt(int index) {
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+        return buffer.get(offset + index);
+    }
+
+    /**
+     * @return new view of a part of this slice (sharing the same bytes).
+     */
+    @Override
+    public ByteSlice subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + length);
+        return new ByteSlice(buffer, offset + start, end - start);
+    }
+
+    /**
+     * @param prefix bytes to match
+     * @return true if the slice starts with the bytes.
+     */
+    public boolean startsWith(byte[] prefix) {
+        if (prefix.length > length)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(offset + i) != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param b    byte to search for
+     * @param from index to start the search at
+     * @return index of the first occurrence of the byte at or after from, -1 if there is none.
+     */
+    public int indexOf(byte b, int from) {
+        for (int i = Math.max(from, 0); i < length; i++) {
+            if (buffer.get(offset + i) == b)
+                return i;
+        }
+        return -1;
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length];
+        buffer.get(offset, bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * @param charset encoding of the bytes
+     * @return the decoded bytes.
+     */
+    public String toString(Charset charset) {
+        if (buffer.hasArray())
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, charset);
+        return new String(toByteArray(), charset);
+    }
+
+    /**
+     * @return the bytes as ISO-8859-1 characters, consistent with charAt.
+     */
+    @Override
+    public String toString() {
+        return toString(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,67 @@
+package org.colossaldb.util;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Lazy iterator over all the R-length combinations of a list of N elements.
+ * <p/>
+ * The iterator keeps a single array of R indices into the element list and advances it in lexicographic order,
+ * hence the memory used does not depend on the number of combinations. Only the returned lists are allocated.
+ *
+ * @param <T> element type
+ */
+class CombinationIterator<T> implements Iterator<List<T>> {
+    // Random access copy of the input elements.
+    private final List<T> elements;
+
+    // Indices (into elements) of the next combination to be returned. Always in increasing order.
+    private final int[] indices;
+
+    private boolean hasNext;
+
+    CombinationIterator(Collection<T> collectionIn, int r) {
+        this.elements = new ArrayList<T>(collectionIn);
+        IntCombinatoricUtil.checkSizes(elements.size(), r);
+        this.indices = IntCombinatoricUtil.firstCombination(r);
+
+        // Same convention as CombinatoricUtil.combinations: nothing to choose gives no combinations.
+        this.hasNext = r > 0 && r <= elements.size();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public List<T> next() {
+        if (!hasNext)
+            throw new NoSuchElementException();
+
+        List<T> combination = IntCombinatoricUtil.select(elements, indices);
+        hasNext = IntCombinatoricUtil.nextCombination(indices, elements.size());
+        return combination;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Combinations cannot be removed.");
+    }
+}
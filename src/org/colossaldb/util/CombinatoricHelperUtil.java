@@ -38,10 +38,9 @@ class CombinatoricHelperUtil {
         }
 
         @Override
-        protected <E> Collection<E> makeCollectionStore() {
-            return new ArrayList<E>();
+        protected boolean enumerate(int[] counts, int r, IntCombinationVisitor visitor) {
+            return IntCombinatoricUtil.forEachMultisetPermutation(counts, r, visitor);
         }
-
     };
 
     // Prevent instantiation of utility classes.
@@ -52,116 +51,70 @@ class CombinatoricHelperUtil {
         return new SortedArrayList<E>();
     }
 
-    protected <E> Collection<E> makeCollectionStore() {
-        return new HashSet<E>();
+    /**
+     * Enumerate the distinct index selections (combinations or permutations) of R elements out of a multiset.
+     *
+     * @param counts  number of copies of each distinct element
+     * @param r       number of elements in each selection
+     * @param visitor callback for each selection
+     * @return false if the visitor stopped the enumeration.
+     */
+    protected boolean enumerate(int[] counts, int r, IntCombinationVisitor visitor) {
+        return IntCombinatoricUtil.forEachMultisetCombination(counts, r, visitor);
     }
 
     /**
      * Simple implementation for:  choosing a set R items out of a given collection containing N items.
+     * <p/>
+     * Duplicate objects in the input are counted instead of being told apart, and the selections are generated on
+     * distinct element indices by {@link IntCombinatoricUtil}. Hence every distinct result is generated once, and
+     * mapped back to the elements only for the result.
      *
      * @param util         CombinatoricHelperUtil instance to use.
      * @param collectionIn the original collection of objects
      * @param r            the number of elements we want to select out of the original collection
      * @return Sets of all the possible combinations.
      */
-    static <T extends Comparable<T>> Collection<Collection<T>> chooseRoutOfN(CombinatoricHelperUtil util, Collection<T> collectionIn, int r) {
+    static <T extends Comparable<T>> Collection<Collection<T>> chooseRoutOfN(final CombinatoricHelperUtil util, Collection<T> collectionIn, int r) {
         if (r == 0 || r > collectionIn.size())
             return Collections.emptySet();
-
-        // Duplicates objects in the input list will cause problem for collection comparisons
-        // For example:
-        //      List<Character> list = Arrays.asList('a', 'b', 'c', 'a');
-        //      The exact same object can be the first and last object, when using sets we will not be allowed to create
-        //      a set with two 'a' objects
-        //
-        // We can use sets and simplify logic if we don't have duplicates.
-        // To work around the duplicates, we are simply going to create a
-        // wrapper object for all objects.
-        //
-        Collection<? extends Comparable<T>> collection = addWrapper(collectionIn);
-
-        Collection<Collection<Comparable<T>>> combinations = util.makeCollectionStore();
-        for (Comparable<T> currT : collection) {
-            Collection<Comparable<T>> currSet = util.makeCollectionStore();
-            currSet.add(currT);
-            combinations.add(currSet);
-        }
-        r--;
-
-        // Iterate to add other elements now.
-        while (r > 0) {
-            Collection<Collection<Comparable<T>>> newCombinations = util.makeCollectionStore();
-            for (Collection<Comparable<T>> currSet : combinations) {
-                for (Comparable<T> curr : collection) {
-                    // If we have already used this object, then we should not use it again.
-                    if (currSet.contains(curr))
-                        continue;
-                    Collection<Comparable<T>> tempCurrSet = util.makeCollectionStore();
-                    tempCurrSet.addAll(currSet);
-                    tempCurrSet.add(curr);
-                    newCombinations.add(tempCurrSet);
-                }
+        // A negative r has always given the single elements, keep it that way.
+        if (r < 0)
+            r = 1;
+
+        Map<T, Integer> elementCounts = countElements(collectionIn);
+        final List<T> elements = new ArrayList<T>(elementCounts.keySet());
+        int[] counts = new int[elements.size()];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = elementCounts.get(elements.get(i));
+
+        final Set<Collection<T>> result = new HashSet<Collection<T>>();
+        util.enumerate(counts, r, new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                Collection<T> selected = util.makeCollection();
+                for (int index : indices)
+                    selected.add(elements.get(index));
+                result.add(selected);
+                return true;
             }
-
-            // Now replace the old combinations with new one.
-            combinations = newCombinations;
-            r--;
-        }
-
-        return removeWrapper(util, combinations);
-    }
-
-    /**
-     * Create an equivalent collection that contains the original object instead of the wrapper object.
-     *
-     * @param util         - CombinatoricHelperUtil object (either COMBINATION or PERMUTATION).
-     * @param combinations the input collection that contains the wrapper object.
-     * @return collection of objects instead of the wrapper object
-     */
-    private static <T extends Comparable<T>> Collection<Collection<T>> removeWrapper(CombinatoricHelperUtil util, Collection<Collection<Comparable<T>>> combinations) {
-        Set<Collection<T>> result = new HashSet<Collection<T>>();
-        for (Collection<Comparable<T>> combination : combinations) {
-            Collection<T> list = util.makeCollection();
-            for (Comparable<T> t : combination) {
-                list.add(((ComparableWrapper<T>) t).holder);
-            }
-            result.add(list);
-        }
+        });
         return result;
     }
 
     /**
-     * Add the wrapper around all input collection elements.
-     * This will make all objects in the collection unique.
+     * Count the copies of every distinct element (by equals) of the collection.
      *
      * @param collection input collection
      * @param <T>        type of the collection
-     * @return collection of wrapper objects. The wrapper objects will contain the original object.
+     * @return number of copies of each distinct element, in the order of their first occurrence.
      */
-    private static <T extends Comparable<T>> Collection<? extends Comparable<T>> addWrapper(Collection<T> collection) {
-        Collection<ComparableWrapper<T>> c = new ArrayList<ComparableWrapper<T>>();
+    static <T> Map<T, Integer> countElements(Collection<T> collection) {
+        Map<T, Integer> counts = new LinkedHashMap<T, Integer>();
         for (T t : collection) {
-            c.add(new ComparableWrapper<T>(t));
-        }
-        return c;
-    }
-
-    /**
-     * Wrapper object around an input object.
-     *
-     * @param <E> parameter type
-     */
-    private static class ComparableWrapper<E extends Comparable<E>> implements Comparable<E> {
-        // The original object
-        private final E holder;
-
-        ComparableWrapper(E object) {
-            this.holder = object;
-        }
-
-        @Override
-        public int compareTo(E o) {
-            return holder.compareTo(o);
+            Integer count = counts.get(t);
+            counts.put(t, count == null ? 1 : count + 1);
         }
+        return counts;
     }
 }
@@ -1,6 +1,18 @@
 package org.colossaldb.util;
 
+import java.math.BigInteger;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Copyright (C) 2013  Jayaprakash Pasala
@@ -24,6 +36,30 @@ import java.util.Collection;
  * Time: 9:56 AM
  */
 public class CombinatoricUtil {
+    // 20! is the largest factorial that fits in a long.
+    private static final long[] FACTORIALS = new long[21];
+
+    // C(66, 33) is the largest central binomial that fits in a long, so the whole triangle up to 66 fits.
+    private static final int BINOMIAL_TABLE_SIZE = 67;
+
+    // Pascal's triangle, only the first half of every row (C(n, r) == C(n, n - r)).
+    private static final long[][] BINOMIALS = new long[BINOMIAL_TABLE_SIZE][];
+
+    static {
+        FACTORIALS[0] = 1;
+        for (int i = 1; i < FACTORIALS.length; i++)
+            FACTORIALS[i] = FACTORIALS[i - 1] * i;
+
+        for (int n = 0; n < BINOMIAL_TABLE_SIZE; n++) {
+            BINOMIALS[n] = new long[n / 2 + 1];
+            BINOMIALS[n][0] = 1;
+            for (int r = 1; r <= n / 2; r++) {
+                // C(n - 1, r) is stored as C(n - 1, n - 1 - r) past the middle of the previous row.
+                BINOMIALS[n][r] = BINOMIALS[n - 1][r - 1] + BINOMIALS[n - 1][Math.min(r, n - 1 - r)];
+            }
+        }
+    }
+
     private CombinatoricUtil() {
     }
 
@@ -38,6 +74,56 @@ public class CombinatoricUtil {
         return CombinatoricHelperUtil.chooseRoutOfN(CombinatoricHelperUtil.COMBINATIONS, collectionIn, r);
     }
 
+    /**
+     * Lazily iterate over all the R-length combinations of a given collection containing N items. The combinations
+     * are generated one at a time in lexicographic order of the element positions, so memory use does not grow
+     * with the number of combinations.
+     * <p/>
+     * Unlike {@link #combinations(Collection, int)} duplicate elements are not collapsed: every combination of
+     * positions is returned exactly once.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements we want to select out of the original collection
+     * @return iterator over all the possible combinations. Every call to next() returns a new list.
+     */
+    public static <T> Iterator<List<T>> combinationsIterator(Collection<T> collectionIn, int r) {
+        return new CombinationIterator<T>(collectionIn, r);
+    }
+
+    /**
+     * Same as {@link #combinationsIterator(Collection, int)} but exposed as a sequential stream. The stream can be
+     * turned parallel, see {@link #combinationsSpliterator(Collection, int)}. When there are more combinations than
+     * fit in a long the stream is still lazy, but it can not be split.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements we want to select out of the original collection
+     * @return stream of all the possible combinations.
+     */
+    public static <T> Stream<List<T>> combinationsStream(Collection<T> collectionIn, int r) {
+        Spliterator<List<T>> spliterator;
+        try {
+            spliterator = combinationsSpliterator(collectionIn, r);
+        } catch (ArithmeticException e) {
+            // Too many combinations to rank, walk them one after the other instead.
+            spliterator = unsizedSpliterator(combinationsIterator(collectionIn, r));
+        }
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * Spliterator over all the R-length combinations, in the same order as
+     * {@link #combinationsIterator(Collection, int)}. Splitting divides the rank range in two equal halves, so
+     * parallel streams and fork/join tasks get balanced work.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements we want to select out of the original collection
+     * @return spliterator of all the possible combinations.
+     * @throws ArithmeticException if the number of combinations does not fit in a long.
+     */
+    public static <T> Spliterator<List<T>> combinationsSpliterator(Collection<T> collectionIn, int r) {
+        return new RankRangeSpliterator.Combinations<T>(collectionIn, r);
+    }
+
     /**
      * Simple implementation for:  choosing a set of R-length sets out of a given collection containing N items.
      *
@@ -49,18 +135,513 @@ public class CombinatoricUtil {
         return CombinatoricHelperUtil.chooseRoutOfN(CombinatoricHelperUtil.PERMUTATIONS, collectionIn, r);
     }
 
+    /**
+     * Lazily iterate over all the R-length permutations of a given collection in lexicographic order of the element
+     * positions. Duplicate elements are not collapsed.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements in each permutation
+     * @return iterator over all the possible permutations. Every call to next() returns a new list.
+     */
+    public static <T> Iterator<List<T>> permutationsIterator(Collection<T> collectionIn, int r) {
+        return permutationsIterator(collectionIn, r, PermutationOrder.LEXICOGRAPHIC);
+    }
+
+    /**
+     * Lazily iterate over all the R-length permutations of a given collection in the requested order.
+     * Duplicate elements are not collapsed.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements in each permutation
+     * @param order        generation order
+     * @return iterator over all the possible permutations. Every call to next() returns a new list.
+     * @see PermutationGenerator for walking the permutations as indices without any allocation.
+     */
+    public static <T> Iterator<List<T>> permutationsIterator(Collection<T> collectionIn, int r, PermutationOrder order) {
+        return new PermutationIterator<T>(collectionIn, r, order);
+    }
+
+    /**
+     * Same as {@link #permutationsIterator(Collection, int, PermutationOrder)} but exposed as a sequential stream.
+     * Only the lexicographic order can be split efficiently for parallel streams, and only while the number of
+     * permutations fits in a long.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements in each permutation
+     * @param order        generation order
+     * @return stream of all the possible permutations.
+     */
+    public static <T> Stream<List<T>> permutationsStream(Collection<T> collectionIn, int r, PermutationOrder order) {
+        if (order == PermutationOrder.LEXICOGRAPHIC) {
+            try {
+                return StreamSupport.stream(permutationsSpliterator(collectionIn, r), false);
+            } catch (ArithmeticException e) {
+                // Too many permutations to rank, fall through to the iterator.
+            }
+        }
+        return StreamSupport.stream(unsizedSpliterator(permutationsIterator(collectionIn, r, order)), false);
+    }
+
+    private static <T> Spliterator<List<T>> unsizedSpliterator(Iterator<List<T>> iterator) {
+        return Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * Spliterator over all the R-length permutations in lexicographic order. Splitting divides the rank range in two
+     * equal halves, so parallel streams and fork/join tasks get balanced work.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements in each permutation
+     * @return spliterator of all the possible permutations.
+     * @throws ArithmeticException if the number of permutations does not fit in a long.
+     */
+    public static <T> Spliterator<List<T>> permutationsSpliterator(Collection<T> collectionIn, int r) {
+        return new RankRangeSpliterator.Permutations<T>(collectionIn, r);
+    }
+
+    /**
+     * Search the R-length combinations of a collection with pruning. The combinations are built element by element,
+     * and every partial combination is checked by the filter as soon as it is extended. When the filter rejects a
+     * partial combination, none of the combinations starting with it are generated.
+     * <p/>
+     * For example, to find combinations whose weights sum to at most X, the filter rejects the prefixes whose sum
+     * already exceeds X.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements in each combination
+     * @param prefixFilter returns false for partial (or complete) combinations that cannot lead to a match. The list
+     *                     passed to it is a view that is only valid during the call.
+     * @param limit        maximum number of combinations to return; the search stops once it is reached
+     * @return the accepted combinations, in lexicographic order of the element positions.
+     */
+    public static <T> List<List<T>> findCombinations(Collection<T> collectionIn, int r, Predicate<? super List<T>> prefixFilter, int limit) {
+        return findCombinations(collectionIn, r, prefixFilter, false, limit);
+    }
+
+    /**
+     * Same as {@link #findCombinations(Collection, int, Predicate, int)}, optionally treating the filter as a
+     * monotone bound: once a prefix is rejected, replacing its last element by a later element of the collection is
+     * assumed to be rejected as well. For the weight sum example this holds when the collection is sorted by
+     * increasing weight, and it cuts the search down to the combinations that are close to the bound.
+     *
+     * @param collectionIn the original collection of objects
+     * @param r            the number of elements in each combination
+     * @param prefixFilter returns false for partial (or complete) combinations that cannot lead to a match. The list
+     *                     passed to it is a view that is only valid during the call.
+     * @param monotone     true if the filter is a monotone bound as described above
+     * @param limit        maximum number of combinations to return; the search stops once it is reached
+     * @return the accepted combinations, in lexicographic order of the element positions.
+     */
+    public static <T> List<List<T>> findCombinations(Collection<T> collectionIn, int r, final Predicate<? super List<T>> prefixFilter,
+                                                     boolean monotone, final int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("The limit cannot be negative. Input: " + limit);
+
+        final List<T> elements = new ArrayList<T>(collectionIn);
+        final List<List<T>> found = new ArrayList<List<T>>();
+        if (limit == 0)
+            return found;
+
+        final PrefixView<T> prefix = new PrefixView<T>(elements);
+        IntCombinatoricUtil.forEachCombination(elements.size(), r, new IntPrefixFilter() {
+            @Override
+            public boolean accept(int[] indices, int length) {
+                prefix.reset(indices, length);
+                return prefixFilter.test(prefix);
+            }
+        }, monotone, new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                found.add(IntCombinatoricUtil.select(elements, indices));
+                return found.size() < limit;
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Lazily iterate over the distinct R-length combinations of a multiset. Each distinct combination is returned
+     * exactly once, in lexicographic order of the element order of the map.
+     *
+     * @param elementCounts number of copies of each distinct element
+     * @param r             the number of elements in each combination
+     * @return iterator over the distinct combinations. Every call to next() returns a new list.
+     */
+    public static <T> Iterator<List<T>> multisetCombinationsIterator(Map<T, Integer> elementCounts, int r) {
+        return new MultisetIterator<T>(elementCounts, r, false);
+    }
+
+    /**
+     * Same as {@link #multisetCombinationsIterator(Map, int)}, the multiset being the elements of the collection
+     * (equal elements are counted as copies of one element).
+     *
+     * @param collectionIn the original collection of objects, possibly with duplicates
+     * @param r            the number of elements in each combination
+     * @return iterator over the distinct combinations. Every call to next() returns a new list.
+     */
+    public static <T> Iterator<List<T>> multisetCombinationsIterator(Collection<T> collectionIn, int r) {
+        return multisetCombinationsIterator(CombinatoricHelperUtil.countElements(collectionIn), r);
+    }
+
+    /**
+     * Lazily iterate over the distinct R-length permutations of a multiset. Each distinct permutation is returned
+     * exactly once, in lexicographic order of the element order of the map.
+     *
+     * @param elementCounts number of copies of each distinct element
+     * @param r             the number of elements in each permutation
+     * @return iterator over the distinct permutations. Every call to next() returns a new list.
+     */
+    public static <T> Iterator<List<T>> multisetPermutationsIterator(Map<T, Integer> elementCounts, int r) {
+        return new MultisetIterator<T>(elementCounts, r, true);
+    }
+
+    /**
+     * Same as {@link #multisetPermutationsIterator(Map, int)}, the multiset being the elements of the collection
+     * (equal elements are counted as copies of one element).
+     *
+     * @param collectionIn the original collection of objects, possibly with duplicates
+     * @param r            the number of elements in each permutation
+     * @return iterator over the distinct permutations. Every call to next() returns a new list.
+     */
+    public static <T> Iterator<List<T>> multisetPermutationsIterator(Collection<T> collectionIn, int r) {
+        return multisetPermutationsIterator(CombinatoricHelperUtil.countElements(collectionIn), r);
+    }
+
+    /**
+     * Position of a combination in the lexicographic order of all the R-length combinations of 0..N-1 (the order used
+     * by {@link #combinationsIterator(Collection, int)} and {@link IntCombinatoricUtil#forEachCombination}).
+     * Computed with the combinatorial number system, without enumerating the preceding combinations.
+     *
+     * @param combination strictly increasing element indices
+     * @param n           number of elements to choose from
+     * @return rank of the combination, between 0 and C(n, r) - 1.
+     */
+    public static long rankCombination(int[] combination, int n) {
+        int r = combination.length;
+        for (int i = 0; i < r; i++) {
+            if (combination[i] < 0 || combination[i] >= n || (i > 0 && combination[i] <= combination[i - 1]))
+                throw new IllegalArgumentException("Not a valid combination of " + n + " elements: " + Arrays.toString(combination));
+        }
+
+        // With d(i) = n - 1 - c(i), the sum of C(d(i), r - i) is the rank in the reverse order.
+        long reverseRank = 0;
+        for (int i = 0; i < r; i++)
+            reverseRank += binomial(n - 1 - combination[i], r - i);
+        return binomial(n, r) - 1 - reverseRank;
+    }
+
+    /**
+     * The combination at the given position in the lexicographic order of all the R-length combinations of 0..N-1.
+     * This is the inverse of {@link #rankCombination(int[], int)}.
+     *
+     * @param index rank of the combination, between 0 and C(n, r) - 1
+     * @param n     number of elements to choose from
+     * @param r     number of elements in the combination
+     * @return strictly increasing element indices of the combination.
+     */
+    public static int[] unrankCombination(long index, int n, int r) {
+        IntCombinatoricUtil.checkSizes(n, r);
+        long count = binomial(n, r);
+        if (index < 0 || index >= count)
+            throw new IllegalArgumentException("Index [" + index + "] is out of range. There are " + count + " combinations.");
+
+        int[] combination = new int[r];
+        long reverseRank = count - 1 - index;
+        int d = n - 1;
+        for (int i = 0; i < r; i++) {
+            // Largest d such that C(d, r - i) does not exceed the remaining rank (greedy combinadic digits).
+            long c;
+            while ((c = binomial(d, r - i)) > reverseRank)
+                d--;
+            combination[i] = n - 1 - d;
+            reverseRank -= c;
+            d--;
+        }
+        return combination;
+    }
+
+    /**
+     * Position of an R-length permutation of 0..N-1 in the lexicographic order of all such permutations (the order
+     * used by {@link PermutationOrder#LEXICOGRAPHIC}). Computed from the Lehmer code of the permutation.
+     *
+     * @param permutation distinct element indices
+     * @param n           number of elements to choose from
+     * @return rank of the permutation, between 0 and n! / (n - r)! - 1.
+     * @throws ArithmeticException if the rank does not fit in a long.
+     */
+    public static long rankPermutation(int[] permutation, int n) {
+        int r = permutation.length;
+        if (r > n)
+            throw new IllegalArgumentException("Not a valid permutation of " + n + " elements: " + Arrays.toString(permutation));
+
+        boolean[] used = new boolean[n];
+        long rank = 0;
+        for (int i = 0; i < r; i++) {
+            int value = permutation[i];
+            if (value < 0 || value >= n || used[value])
+                throw new IllegalArgumentException("Not a valid permutation of " + n + " elements: " + Arrays.toString(permutation));
+
+            // Lehmer digit: the number of unused elements smaller than this one.
+            int digit = 0;
+            for (int j = 0; j < value; j++) {
+                if (!used[j])
+                    digit++;
+            }
+            used[value] = true;
+            rank = Math.addExact(rank, Math.multiplyExact(digit, permutationCount(n - 1 - i, r - 1 - i)));
+        }
+        return rank;
+    }
+
+    /**
+     * The permutation at the given position in the lexicographic order of all R-length permutations of 0..N-1.
+     * This is the inverse of {@link #rankPermutation(int[], int)}.
+     *
+     * @param index rank of the permutation, between 0 and n! / (n - r)! - 1
+     * @param n     number of elements to choose from
+     * @param r     number of elements in the permutation
+     * @return element indices of the permutation.
+     */
+    public static int[] unrankPermutation(long index, int n, int r) {
+        IntCombinatoricUtil.checkSizes(n, r);
+        if (r > n)
+            throw new IllegalArgumentException("Cannot select " + r + " out of " + n + " elements.");
+        long count = permutationCount(n, r);
+        if (index < 0 || index >= count)
+            throw new IllegalArgumentException("Index [" + index + "] is out of range. There are " + count + " permutations.");
+
+        boolean[] used = new boolean[n];
+        int[] permutation = new int[r];
+        for (int i = 0; i < r; i++) {
+            long weight = permutationCount(n - 1 - i, r - 1 - i);
+            long digit = index / weight;
+            index %= weight;
+
+            // Pick the digit-th unused element.
+            int value = 0;
+            for (; used[value] || digit > 0; value++) {
+                if (!used[value])
+                    digit--;
+            }
+            used[value] = true;
+            permutation[i] = value;
+        }
+        return permutation;
+    }
+
+    /**
+     * n! for 0 <= n <= 12, i.e. as long as it fits in an int.
+     *
+     * @param n input number
+     * @return factorial of n
+     */
     public static int factorial(int n) {
         if (n < 0)
             throw new UnsupportedOperationException("Cannot calculate factorial for negative numbers. Input: " + n);
+        if (n >= FACTORIALS.length || FACTORIALS[n] > Integer.MAX_VALUE)
+            throw new RuntimeException("The calculation of factorial exceeds Integer.MAX_VALUE");
 
+        return (int) FACTORIALS[n];
+    }
+
+    /**
+     * n! for 0 <= n <= 20, looked up from a precomputed table.
+     *
+     * @param n input number
+     * @return factorial of n
+     * @throws ArithmeticException if the result does not fit in a long (n > 20).
+     */
+    public static long factorialLong(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("Cannot calculate factorial for negative numbers. Input: " + n);
+        if (n >= FACTORIALS.length)
+            throw new ArithmeticException("The factorial of " + n + " exceeds Long.MAX_VALUE");
+        return FACTORIALS[n];
+    }
+
+    /**
+     * n! of any size.
+     *
+     * @param n input number
+     * @return factorial of n
+     */
+    public static BigInteger factorialBig(int n) {
+        if (n < FACTORIALS.length)
+            return BigInteger.valueOf(factorialLong(n));
+
+        BigInteger result = BigInteger.valueOf(FACTORIALS[FACTORIALS.length - 1]);
+        for (int i = FACTORIALS.length; i <= n; i++)
+            result = result.multiply(BigInteger.valueOf(i));
+        return result;
+    }
+
+    /**
+     * Number of ways of choosing R out of N elements, C(n, r). Zero when R is more than N.
+     * <p/>
+     * Values for N up to {@value #BINOMIAL_TABLE_SIZE} are looked up from a precomputed Pascal's triangle. Larger values
+     * are evaluated multiplicatively, reducing every step by the common divisor so that an intermediate value only
+     * overflows when the result itself does not fit in a long.
+     *
+     * @param n number of elements
+     * @param r number of elements chosen
+     * @return C(n, r)
+     * @throws ArithmeticException if the result does not fit in a long.
+     */
+    public static long binomial(long n, long r) {
+        checkCounts(n, r);
+        if (r > n)
+            return 0;
+        r = Math.min(r, n - r);
+        if (n < BINOMIAL_TABLE_SIZE)
+            return BINOMIALS[(int) n][(int) r];
 
-        long factorial = 1;
-        for (int i = 2; i <= n; i++) {
-            factorial *= i;
-            if (factorial > Integer.MAX_VALUE)
-                throw new RuntimeException("The calculation of factorial exceeds Integer.MAX_VALUE");
+        long result = 1;
+        for (long i = 1; i <= r; i++) {
+            // result * (n - r + i) is divisible by i. Divide the common factors out first to avoid a false overflow.
+            long gcd = gcd(result, i);
+            result = Math.multiplyExact(result / gcd, (n - r + i) / (i / gcd));
         }
+        return result;
+    }
+
+    /**
+     * C(n, r) of any size.
+     *
+     * @param n number of elements
+     * @param r number of elements chosen
+     * @return C(n, r)
+     */
+    public static BigInteger binomialBig(long n, long r) {
+        checkCounts(n, r);
+        if (r > n)
+            return BigInteger.ZERO;
+        r = Math.min(r, n - r);
+        if (n < BINOMIAL_TABLE_SIZE)
+            return BigInteger.valueOf(BINOMIALS[(int) n][(int) r]);
+
+        BigInteger result = BigInteger.ONE;
+        for (long i = 1; i <= r; i++)
+            result = result.multiply(BigInteger.valueOf(n - r + i)).divide(BigInteger.valueOf(i));
+        return result;
+    }
+
+    /**
+     * Number of R-length permutations of N elements: n! / (n - r)!. Zero when R is more than N.
+     *
+     * @param n number of elements
+     * @param r number of elements in each permutation
+     * @return n! / (n - r)!
+     * @throws ArithmeticException if the result does not fit in a long.
+     */
+    public static long permutationCount(long n, long r) {
+        checkCounts(n, r);
+        if (r > n)
+            return 0;
+        if (r == n && n < FACTORIALS.length)
+            return FACTORIALS[(int) n];
+
+        long result = 1;
+        for (long i = n - r + 1; i <= n; i++)
+            result = Math.multiplyExact(result, i);
+        return result;
+    }
+
+    /**
+     * n! / (n - r)! of any size.
+     *
+     * @param n number of elements
+     * @param r number of elements in each permutation
+     * @return n! / (n - r)!
+     */
+    public static BigInteger permutationCountBig(long n, long r) {
+        checkCounts(n, r);
+        if (r > n)
+            return BigInteger.ZERO;
+
+        BigInteger result = BigInteger.ONE;
+        for (long i = n - r + 1; i <= n; i++)
+            result = result.multiply(BigInteger.valueOf(i));
+        return result;
+    }
+
+    /**
+     * Multinomial coefficient (k1 + k2 + ... + km)! / (k1! k2! ... km!), i.e. the number of distinct permutations of
+     * a multiset with the given element counts. Evaluated as a product of binomials, so it only overflows when the
+     * result does not fit in a long.
+     *
+     * @param counts number of copies of each distinct element
+     * @return the multinomial coefficient
+     * @throws ArithmeticException if the result does not fit in a long.
+     */
+    public static long multinomial(int... counts) {
+        long result = 1;
+        long total = 0;
+        for (int count : counts) {
+            checkCounts(count, 0);
+            total += count;
+            result = Math.multiplyExact(result, binomial(total, count));
+        }
+        return result;
+    }
+
+    /**
+     * Multinomial coefficient of any size.
+     *
+     * @param counts number of copies of each distinct element
+     * @return the multinomial coefficient
+     */
+    public static BigInteger multinomialBig(int... counts) {
+        BigInteger result = BigInteger.ONE;
+        long total = 0;
+        for (int count : counts) {
+            checkCounts(count, 0);
+            total += count;
+            result = result.multiply(binomialBig(total, count));
+        }
+        return result;
+    }
+
+    private static void checkCounts(long n, long r) {
+        if (n < 0 || r < 0)
+            throw new IllegalArgumentException("Negative counts are not permitted. Input: n = " + n + ", r = " + r);
+    }
 
-        return (int) factorial;
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long temp = a % b;
+            a = b;
+            b = temp;
+        }
+        return a;
+    }
+
+    /**
+     * Read only list view of the elements selected by a prefix of an index buffer. Reused for every prefix.
+     */
+    private static class PrefixView<T> extends AbstractList<T> {
+        private final List<T> elements;
+        private int[] indices;
+        private int length;
+
+        PrefixView(List<T> elements) {
+            this.elements = elements;
+        }
+
+        void reset(int[] indices, int length) {
+            this.indices = indices;
+            this.length = length;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + length);
+            return elements.get(indices[index]);
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
     }
 }
@@ -0,0 +1,458 @@
+package org.colossaldb.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Thread safe counterpart of {@link SortedArrayList}. Null elements are not permitted in the list.
+ * <p/>
+ * The elements are kept in an immutable sorted array which is replaced as a whole on every change (copy on write).
+ * Reads never lock: they binary search or iterate the array that was current when they started.
+ * <p/>
+ * Writes are batched: every added element is queued, and the thread that gets the write lock drains the whole
+ * queue and merges it into a new array with a single merge pass. Concurrent add calls are therefore combined into
+ * one addAll style merge, and the threads whose elements were merged by another thread return as soon as they get
+ * the lock. An add call returns once its element is visible to all readers. An element that can not be compared
+ * with the list elements fails in its own add call, and leaves the list and the other queued elements as they were.
+ * <p/>
+ * get(int) and size() each read the current array, so a sequence of them is not atomic. Use {@link #snapshot()} for a
+ * consistent view across several reads. Iterators, spliterators (and so streams), sub lists, equals and hashCode
+ * all work on such a snapshot: they never throw ConcurrentModificationException and do not see later changes.
+ * The iterators and sub lists are read only; remove, removeAll, retainAll and removeIf change the list under the
+ * write lock.
+ *
+ * @param <E> - the parameter type.
+ */
+public class ConcurrentSortedArrayList<E> extends AbstractList<E> implements RandomAccess {
+    private static final Object[] EMPTY = new Object[0];
+
+    final Comparator<E> comparator;
+
+    // Current sorted elements. Never modified once published.
+    private volatile Object[] elements = EMPTY;
+
+    // Elements waiting to be merged by the thread holding the write lock.
+    private final ConcurrentLinkedQueue<Batch> pending = new ConcurrentLinkedQueue<Batch>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    public ConcurrentSortedArrayList() {
+        this((Comparator<E>) null);
+    }
+
+    public ConcurrentSortedArrayList(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    public ConcurrentSortedArrayList(Comparator<E> comparator, Collection<E> elements) {
+        this(comparator);
+        addAll(elements);
+    }
+
+    public ConcurrentSortedArrayList(Collection<E> elements) {
+        this(null, elements);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        Object[] current = elements;
+        if (index < 0 || index >= current.length)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+        return (E) current[index];
+    }
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+    /**
+     * @return immutable view of the elements at the time of the call.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> snapshot() {
+        return Collections.unmodifiableList(Arrays.asList((E[]) elements));
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator() {
+        return snapshot().listIterator();
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        return snapshot().listIterator(index);
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(elements, Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    /**
+     * @return immutable view of the elements between the two indexes at the time of the call.
+     */
+    @Override
+    public List<E> subList(int fromIndex, int toIndex) {
+        return snapshot().subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || snapshot().equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return snapshot().hashCode();
+    }
+
+    @Override
+    public Object[] toArray() {
+        return elements.clone();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Binary search for the first occurrence of the element. Elements that compare equal to it are checked with
+     * equals.
+     *
+     * @param o element to search for
+     * @return the index of the first occurrence of the element in this list, or -1 if it is not in the list.
+     */
+    @Override
+    public int indexOf(Object o) {
+        return indexOf(elements, o);
+    }
+
+    /**
+     * Add the element. Returns once the element is visible to the readers, possibly merged by another thread.
+     *
+     * @param element element to add
+     * @return true (the list always changes).
+     */
+    @Override
+    public boolean add(E element) {
+        if (element == null)
+            throw new NullPointerException("Null elements are not permitted.");
+        checkComparable(element, element);
+        return addBatch(new Batch(new Object[]{element}));
+    }
+
+    /**
+     * Add all the elements with a single merge (possibly together with the elements added by other threads).
+     *
+     * @param eCollection - the collection to be added.
+     * @return - returns "true" if the collection is changed.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean addAll(Collection<? extends E> eCollection) {
+        if (eCollection == null || eCollection.isEmpty())
+            return false;
+        Object[] newElements = eCollection.toArray();
+        for (Object element : newElements) {
+            if (element == null)
+                throw new NullPointerException("Null elements are not permitted.");
+            checkComparable((E) element, (E) newElements[0]);
+        }
+        return addBatch(new Batch(newElements));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        writeLock.lock();
+        try {
+            mergePendingLocked();
+            Object[] current = elements;
+            int index = indexOf(current, o);
+            if (index < 0)
+                return false;
+            publishWithout(current, index);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E remove(int index) {
+        writeLock.lock();
+        try {
+            mergePendingLocked();
+            Object[] current = elements;
+            if (index < 0 || index >= current.length)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + current.length);
+            publishWithout(current, index);
+            return (E) current[index];
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(final Collection<?> c) {
+        if (c == null)
+            throw new NullPointerException();
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return c.contains(element);
+            }
+        });
+    }
+
+    @Override
+    public boolean retainAll(final Collection<?> c) {
+        if (c == null)
+            throw new NullPointerException();
+        return removeIf(new Predicate<E>() {
+            @Override
+            public boolean test(E element) {
+                return !c.contains(element);
+            }
+        });
+    }
+
+    /**
+     * Remove the matching elements with a single copy of the array, under the write lock like remove(Object).
+     *
+     * @param filter - returns true for the elements to remove
+     * @return - returns "true" if any element was removed.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        if (filter == null)
+            throw new NullPointerException();
+        writeLock.lock();
+        try {
+            mergePendingLocked();
+            Object[] current = elements;
+            Object[] kept = new Object[current.length];
+            int count = 0;
+            for (Object element : current) {
+                if (!filter.test((E) element))
+                    kept[count++] = element;
+            }
+            if (count == current.length)
+                return false;
+            elements = Arrays.copyOf(kept, count);
+            modCount++;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        writeLock.lock();
+        try {
+            pending.clear();
+            elements = EMPTY;
+            modCount++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void add(int index, E element) {
+        throw new UnsupportedOperationException("Insertion at a specified position is not permitted as this operation might break" +
+                " the order of elements in the sorted list.");
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> eCollection) {
+        throw new UnsupportedOperationException("Insertion at a specified position is not permitted as this operation might break" +
+                " the order of elements in the sorted list.");
+    }
+
+    @Override
+    public E set(int index, E element) {
+        throw new UnsupportedOperationException("Replacing an element is not permitted as this operation might break" +
+                " the order of elements in the sorted list.");
+    }
+
+    private void mergePending() {
+        writeLock.lock();
+        try {
+            mergePendingLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Compare a new element with another new one and with an element of the list, in the caller's thread. An element
+     * of the wrong type or without a comparator then fails here instead of in the merge run for other threads.
+     */
+    @SuppressWarnings("unchecked")
+    private void checkComparable(E element, E other) {
+        internalCompare(element, other);
+        Object[] current = elements;
+        if (current.length > 0)
+            internalCompare(element, (E) current[0]);
+    }
+
+    // Queue the batch, wait for it to be merged and throw the error that kept it out of the list, if any.
+    private boolean addBatch(Batch batch) {
+        pending.add(batch);
+        mergePending();
+        if (batch.failure != null)
+            throw batch.failure;
+        return true;
+    }
+
+    /**
+     * Drain the queue, sort the drained elements and merge them with the current elements into a new array.
+     * Must be called with the write lock held. If the merge fails (elements of different threads that do not compare)
+     * the batches are merged one at a time: a batch that fails is left out and its add call throws the error.
+     */
+    private void mergePendingLocked() {
+        if (pending.isEmpty())
+            return; // Already merged by the previous lock holder.
+
+        List<Batch> batches = new ArrayList<Batch>();
+        int count = 0;
+        for (Batch batch; (batch = pending.poll()) != null; ) {
+            batches.add(batch);
+            count += batch.elements.length;
+        }
+        Object[] newElements = new Object[count];
+        count = 0;
+        for (Batch batch : batches) {
+            System.arraycopy(batch.elements, 0, newElements, count, batch.elements.length);
+            count += batch.elements.length;
+        }
+
+        try {
+            merge(newElements);
+        } catch (RuntimeException e) {
+            for (Batch batch : batches) {
+                try {
+                    merge(batch.elements);
+                } catch (RuntimeException failure) {
+                    batch.failure = failure;
+                }
+            }
+        }
+    }
+
+    // Sort the new elements (in place) and publish them merged with the current elements.
+    @SuppressWarnings("unchecked")
+    private void merge(Object[] added) {
+        E[] newElements = (E[]) added;
+        if (comparator == null)
+            Arrays.sort(newElements);
+        else
+            Arrays.sort(newElements, comparator);
+
+        Object[] current = elements;
+        Object[] merged = new Object[current.length + newElements.length];
+        // Existing elements go first among equal ones.
+        int i = 0, j = 0, k = 0;
+        while (i < current.length && j < newElements.length) {
+            if (internalCompare((E) current[i], newElements[j]) <= 0)
+                merged[k++] = current[i++];
+            else
+                merged[k++] = newElements[j++];
+        }
+        System.arraycopy(current, i, merged, k, current.length - i);
+        System.arraycopy(newElements, j, merged, k + current.length - i, newElements.length - j);
+        elements = merged;
+        modCount++;
+    }
+
+    /**
+     * Elements of one add or addAll call.
+     */
+    private static final class Batch {
+        final Object[] elements;
+        // Set by the merging thread when the elements could not be merged.
+        volatile RuntimeException failure;
+
+        Batch(Object[] elements) {
+            this.elements = elements;
+        }
+    }
+
+    private void publishWithout(Object[] current, int index) {
+        Object[] smaller = new Object[current.length - 1];
+        System.arraycopy(current, 0, smaller, 0, index);
+        System.arraycopy(current, index + 1, smaller, index, current.length - index - 1);
+        elements = smaller;
+        modCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int indexOf(Object[] current, Object o) {
+        if (o == null || current.length == 0 || (comparator == null && !(o instanceof Comparable)))
+            return -1;
+
+        try {
+            E key = (E) o;
+            // First element not less than the key.
+            int left = 0, right = current.length;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (internalCompare(key, (E) current[mid]) <= 0)
+                    right = mid;
+                else
+                    left = mid + 1;
+            }
+            for (; left < current.length && internalCompare(key, (E) current[left]) == 0; left++) {
+                if (o.equals(current[left]))
+                    return left;
+            }
+            return -1;
+        } catch (ClassCastException e) {
+            return -1;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private int internalCompare(E element1, E element2) {
+        int compareVal;
+        if (comparator == null) {
+            if (element1 instanceof Comparable) {
+                compareVal = ((Comparable) element1).compareTo(element2);
+            } else {
+                throw new RuntimeException("Cannot cast [" + element1 + "] element to Comparable. The comparator must be set in the constructor for ConcurrentSortedArrayList.");
+            }
+        } else {
+            compareVal = comparator.compare(element1, element2);
+        }
+        return compareVal;
+    }
+}
@@ -0,0 +1,293 @@
+package org.colossaldb.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Incremental reader of a growing file (a log). Every {@link #poll()} returns only the complete lines added since the
+ * previous call, so a poll costs O(new bytes) instead of O(file size).
+ * <p/>
+ * The tailer keeps the byte offset it has read up to, and the bytes of the last line while it has no line terminator
+ * yet. Lines end with "\n" or "\r\n".
+ * <ul>
+ * <li>Truncation (the file got shorter than the offset, or the last bytes read before the offset changed): reading
+ * restarts at the beginning of the file. Comparing the last bytes catches a copytruncate rotation even when the file
+ * has grown past the offset again by the next poll. A file rewritten with the same bytes just before the offset is
+ * not detected.</li>
+ * <li>Rotation (the path now names another file, see {@link BasicFileAttributes#fileKey()}): the rest of the old file
+ * is read, including its unterminated last line, then reading continues at the beginning of the new file. Rotation is
+ * not detected on file systems without file keys.</li>
+ * </ul>
+ * {@link #await(long, TimeUnit)} waits for a change of the file with a WatchService instead of sleeping between polls.
+ * This class is NOT thread safe.
+ */
+public class FileTailer implements Closeable {
+    private static final int READ_BUFFER_SIZE = 65536;
+    // Number of bytes before the offset compared on every poll that finds new bytes.
+    private static final int CHECK_SIZE = 64;
+
+    private final Path path;
+    private final Charset charset;
+    // With fromEnd: the size and file key at construction, the contents to skip on the first open.
+    private long skip;
+    private final Object skipFileKey;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long offset;
+
+    // Bytes of the unterminated last line.
+    private byte[] partial = new byte[256];
+    private int partialLength;
+
+    // The last bytes read, up to the offset.
+    private final byte[] lastBytes = new byte[CHECK_SIZE];
+    private int lastLength;
+    private final ByteBuffer checkBuffer = ByteBuffer.allocate(CHECK_SIZE);
+
+    private WatchService watchService;
+
+    /**
+     * Tail a UTF-8 file from its beginning.
+     *
+     * @param path the file. It does not have to exist yet.
+     */
+    public FileTailer(Path path) {
+        this(path, StandardCharsets.UTF_8, false);
+    }
+
+    /**
+     * @param path    the file. It does not have to exist yet.
+     * @param charset encoding of the file (UTF-8, ASCII or a single byte charset)
+     * @param fromEnd true to skip the contents the file has now and only return lines added later. A file created
+     *                (or replaced) after this call is read from its beginning.
+     */
+    public FileTailer(Path path, Charset charset, boolean fromEnd) {
+        if (path == null || charset == null)
+            throw new IllegalArgumentException("Path and charset cannot be null");
+        if (!FileUtil.isNewLineSplittable(charset))
+            throw new IllegalArgumentException("Charset [" + charset + "] cannot be split on new line bytes");
+        this.path = path;
+        this.charset = charset;
+
+        BasicFileAttributes attributes = null;
+        if (fromEnd) {
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // Does not exist (yet): nothing to skip.
+            }
+        }
+        this.skip = attributes == null ? 0 : attributes.size();
+        this.skipFileKey = attributes == null ? null : attributes.fileKey();
+    }
+
+    /**
+     * @return byte offset in the current file up to which the file has been read (including the partial last line).
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Read the lines completed since the previous call.
+     *
+     * @return the new complete lines, without the line terminators. Empty if nothing changed (or the file does not
+     * exist).
+     * @throws IOException if the file cannot be read.
+     */
+    public List<String> poll() throws IOException {
+        List<String> lines = new ArrayList<String>();
+        if (channel == null && !open())
+            return lines;
+
+        long size = channel.size();
+        if (size < offset || size > offset && lastBytesChanged()) {
+            // Truncated (and maybe written again since): the partial line is gone with the old contents.
+            offset = 0;
+            partialLength = 0;
+            lastLength = 0;
+        }
+        readNewBytes(lines);
+
+        Object currentKey = currentFileKey();
+        if (currentKey != null && fileKey != null && !currentKey.equals(fileKey)) {
+            // Rotated: the old file is complete, so is its last line.
+            if (partialLength > 0)
+                lines.add(new String(partial, 0, partialLength, charset));
+            partialLength = 0;
+            channel.close();
+            channel = null;
+            if (open())
+                readNewBytes(lines);
+        }
+        return lines;
+    }
+
+    /**
+     * Wait until the file (or its directory entry) changes, or the timeout expires. Spurious returns are possible, so
+     * call {@link #poll()} after it either way.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    unit of the timeout
+     * @return true if a change was reported, false on timeout.
+     * @throws IOException          if the directory cannot be watched.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean await(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        Path directory = path.toAbsolutePath().getParent();
+        if (watchService == null) {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (long remaining = unit.toNanos(timeout); remaining > 0; remaining = deadline - System.nanoTime()) {
+            WatchKey key = watchService.poll(remaining, TimeUnit.NANOSECONDS);
+            if (key == null)
+                return false;
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || path.getFileName().equals(event.context()))
+                    changed = true;
+            }
+            key.reset();
+            if (changed)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel != null)
+                channel.close();
+        } finally {
+            channel = null;
+            if (watchService != null)
+                watchService.close();
+            watchService = null;
+        }
+    }
+
+    private boolean open() throws IOException {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        fileKey = currentFileKey();
+        // Only the file seen at construction is skipped. A shorter file is caught by the truncation check.
+        offset = skipFileKey == null || skipFileKey.equals(fileKey) ? skip : 0;
+        skip = 0;
+        partialLength = 0;
+        rememberLastBytes();
+        return true;
+    }
+
+    private Object currentFileKey() throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read from the offset to the end of the channel, adding the completed lines.
+     */
+    private void readNewBytes(List<String> lines) throws IOException {
+        long start = offset;
+        while (true) {
+            readBuffer.clear();
+            int read = channel.read(readBuffer, offset);
+            if (read <= 0) {
+                if (offset != start)
+                    rememberLastBytes();
+                return;
+            }
+            offset += read;
+
+            byte[] bytes = readBuffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] != '\n')
+                    continue;
+                int lineEnd = i;
+                if (partialLength == 0) {
+                    if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r')
+                        lineEnd--;
+                    lines.add(new String(bytes, lineStart, lineEnd - lineStart, charset));
+                } else {
+                    appendPartial(bytes, lineStart, lineEnd - lineStart);
+                    int length = partialLength;
+                    if (length > 0 && partial[length - 1] == '\r')
+                        length--;
+                    lines.add(new String(partial, 0, length, charset));
+                    partialLength = 0;
+                }
+                lineStart = i + 1;
+            }
+            appendPartial(bytes, lineStart, read - lineStart);
+        }
+    }
+
+    private void rememberLastBytes() throws IOException {
+        lastLength = readBefore(offset, lastBytes);
+    }
+
+    private boolean lastBytesChanged() throws IOException {
+        if (lastLength == 0)
+            return false;
+        int read = readBefore(offset, checkBuffer.array());
+        return read != lastLength || !Arrays.equals(lastBytes, 0, lastLength, checkBuffer.array(), 0, lastLength);
+    }
+
+    // Read up to CHECK_SIZE bytes ending at the position into the array, returns the number of bytes read.
+    private int readBefore(long position, byte[] bytes) throws IOException {
+        int length = (int) Math.min(CHECK_SIZE, position);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position - length + buffer.position()) <= 0)
+                break;
+        }
+        return buffer.position();
+    }
+
+    private void appendPartial(byte[] bytes, int from, int length) {
+        if (partialLength + length > partial.length)
+            partial = Arrays.copyOf(partial, Math.max(partial.length * 2, partialLength + length));
+        System.arraycopy(bytes, from, partial, partialLength, length);
+        partialLength += length;
+    }
+}
@@ -2,9 +2,34 @@ package org.colossaldb.util;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
@@ -34,8 +59,25 @@ import java.util.List;
  * File helper functions.
  */
 public class FileUtil {
-    // 1Meg as default buffer size. We don't hold on to this for too long, hence leaving it as 1 MEG
-    private static final int CHAR_BUFFER_SIZE = 1048576;
+    // Size of the per thread buffer used to read from a Reader. It is kept for the life of the thread, hence small.
+    private static final int CHAR_BUFFER_SIZE = 16384;
+    private static final ThreadLocal<char[]> CHAR_BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[CHAR_BUFFER_SIZE];
+        }
+    };
+    // Files at least this large are memory mapped instead of read into a heap buffer.
+    static final int MAP_THRESHOLD = 1048576;
+    // Default size of the byte ranges read in parallel.
+    static final int CHUNK_SIZE = 8 * 1048576;
+    // Largest part of a file mapped at once by the byte line scanner.
+    static final int MAX_MAP_SIZE = 1 << 30;
+
+    // SWAR constants: a byte of ones, the high bit of every byte, and the new line in every byte.
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long NEW_LINES = 0x0A0A0A0A0A0A0A0AL;
 
 
     private FileUtil() {
@@ -68,16 +110,664 @@ public class FileUtil {
      * @throws IOException - On failing to read from the stream.
      */
     public static String getFileAsString(Reader reader) throws IOException {
-        BufferedReader bufferedReader = new BufferedReader(reader);
-        char[] buffer = new char[CHAR_BUFFER_SIZE];
+        return getFileAsString(reader, 0);
+    }
+
+    /**
+     * Given a Reader, simply return the contents as a simple string.
+     * <p/>
+     * The contents are read in bulk through a per thread buffer that is reused by every call (no BufferedReader is
+     * needed for bulk reads), and collected in a StringBuilder presized with the hint, so repeated calls on small
+     * inputs allocate little more than the result.
+     *
+     * @param reader       - Reader stream to read the contents from
+     * @param expectedSize - expected number of characters, 0 if unknown
+     * @return - File content is returned as a string.
+     * @throws IOException - On failing to read from the stream.
+     */
+    public static String getFileAsString(Reader reader, int expectedSize) throws IOException {
+        char[] buffer = CHAR_BUFFER.get();
 
-        StringBuilder stringBuilder = new StringBuilder();
+        StringBuilder stringBuilder = new StringBuilder(expectedSize > 0 ? expectedSize : 16);
         int size;
-        while ((size = bufferedReader.read(buffer)) > 0) {
+        while ((size = reader.read(buffer)) > 0) {
             stringBuilder.append(buffer, 0, size);
         }
         return stringBuilder.toString();
     }
 
+    /**
+     * Read a UTF-8 file and return the contents as a list of strings. See {@link #getFileAsStrings(Path, Charset)}.
+     *
+     * @param path - the file to read
+     * @return - list of the file contents as a list of strings.
+     * @throws IOException - On failing to read the file.
+     */
+    public static List<String> getFileAsStrings(Path path) throws IOException {
+        return getFileAsStrings(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a file and return the contents as a list of strings. The line terminators ("\n", "\r" or "\r\n") are
+     * stripped out of the returned value, as {@link BufferedReader#readLine()} does.
+     * <p/>
+     * The file is decoded once, and decompressed if needed (see {@link #getFileAsString(Path, Charset)}), and the lines
+     * are cut out of the decoded characters.
+     *
+     * @param path    - the file to read
+     * @param charset - the encoding of the file
+     * @return - list of the file contents as a list of strings.
+     * @throws IOException - On failing to read the file.
+     */
+    public static List<String> getFileAsStrings(Path path, Charset charset) throws IOException {
+        return splitLines(decode(path, charset));
+    }
+
+    /**
+     * Cut the decoded characters (from 0 to the position of the buffer) into lines, stripping the line terminators.
+     */
+    static List<String> splitLines(CharBuffer chars) {
+        char[] array = chars.array();
+        int end = chars.position();
+
+        List<String> all = new ArrayList<String>();
+        int lineStart = 0;
+        for (int i = 0; i < end; i++) {
+            char c = array[i];
+            if (c == '\n' || c == '\r') {
+                all.add(new String(array, lineStart, i - lineStart));
+                if (c == '\r' && i + 1 < end && array[i + 1] == '\n')
+                    i++;
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end)
+            all.add(new String(array, lineStart, end - lineStart));
+        return all;
+    }
+
+    /**
+     * Read a UTF-8 file and return the contents as a simple string. See {@link #getFileAsString(Path, Charset)}.
+     *
+     * @param path - the file to read
+     * @return - File content is returned as a string.
+     * @throws IOException - On failing to read the file.
+     */
+    public static String getFileAsString(Path path) throws IOException {
+        return getFileAsString(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a file and return the contents as a simple string.
+     * <p/>
+     * The file is read through a FileChannel: small files with a single read into a buffer of the file size, large
+     * ones (see MAP_THRESHOLD) by memory mapping them. UTF-8, ISO-8859-1 and US-ASCII bytes are turned into the String
+     * directly (the JDK's own fast decoding, no char[] in between). Other charsets are decoded straight into one
+     * character buffer sized for the whole file. Malformed input is replaced, as a Reader would do.
+     * <p/>
+     * gzip and zlib files are recognized by their first bytes and decompressed (see {@link #newInputStream(Path)}).
+     *
+     * @param path    - the file to read
+     * @param charset - the encoding of the file
+     * @return - File content is returned as a string.
+     * @throws IOException - On failing to read the file.
+     */
+    public static String getFileAsString(Path path, Charset charset) throws IOException {
+        return newString(readContents(path), charset);
+    }
+
+    /**
+     * Turn the bytes (from the position to the limit) into a String.
+     */
+    static String newString(ByteBuffer bytes, Charset charset) throws IOException {
+        if (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.ISO_8859_1)
+                || charset.equals(StandardCharsets.US_ASCII)) {
+            if (bytes.hasArray())
+                return new String(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining(), charset);
+            byte[] array = new byte[bytes.remaining()];
+            bytes.get(bytes.position(), array);
+            return new String(array, charset);
+        }
+        CharBuffer chars = decode(bytes, charset);
+        return new String(chars.array(), 0, chars.position());
+    }
+
+    /**
+     * Iterator over the lines of a Reader, read one at a time. See {@link LineIterator}.
+     *
+     * @param reader - Reader stream to read the lines from. It is closed when the last line has been read.
+     * @return - iterator over the lines, without the line terminators.
+     */
+    public static LineIterator lineIterator(Reader reader) {
+        return new LineIterator(reader);
+    }
+
+    /**
+     * Iterator over the lines of a UTF-8 file, read one at a time. See {@link #lineIterator(Path, Charset)}.
+     *
+     * @param path - the file to read
+     * @return - iterator over the lines, without the line terminators.
+     * @throws IOException - On failing to open the file.
+     */
+    public static LineIterator lineIterator(Path path) throws IOException {
+        return lineIterator(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Iterator over the lines of a file, read one at a time. The file is closed when the last line has been read; call
+     * {@link LineIterator#close()} when stopping early. Malformed input is replaced, as in
+     * {@link #getFileAsString(Path, Charset)}. gzip and zlib files are decompressed as they are read.
+     *
+     * @param path    - the file to read
+     * @param charset - the encoding of the file
+     * @return - iterator over the lines, without the line terminators.
+     * @throws IOException - On failing to open the file.
+     */
+    public static LineIterator lineIterator(Path path, Charset charset) throws IOException {
+        return new LineIterator(new InputStreamReader(newInputStream(path), charset));
+    }
+
+    /**
+     * Lazy stream of the lines of a Reader. Lines are read as the stream pulls them, so short-circuiting operations
+     * (findFirst, limit, ...) stop reading. Closing the stream closes the reader.
+     *
+     * @param reader - Reader stream to read the lines from
+     * @return - stream of the lines, without the line terminators.
+     */
+    public static Stream<String> lines(Reader reader) {
+        return lines(lineIterator(reader));
+    }
+
+    /**
+     * Lazy stream of the lines of a UTF-8 file. See {@link #lines(Path, Charset)}.
+     *
+     * @param path - the file to read
+     * @return - stream of the lines, without the line terminators.
+     * @throws IOException - On failing to open the file.
+     */
+    public static Stream<String> lines(Path path) throws IOException {
+        return lines(path, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lazy stream of the lines of a file. Lines are read as the stream pulls them, so short-circuiting operations stop
+     * reading. The stream should be closed (try-with-resources) to close the file, if it is not fully consumed. gzip
+     * and zlib files are decompressed as they are read.
+     *
+     * @param path    - the file to read
+     * @param charset - the encoding of the file
+     * @return - stream of the lines, without the line terminators.
+     * @throws IOException - On failing to open the file.
+     */
+    public static Stream<String> lines(Path path, Charset charset) throws IOException {
+        return lines(lineIterator(path, charset));
+    }
+
+    private static Stream<String> lines(final LineIterator iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        iterator.close();
+                    }
+                });
+    }
+
+    /**
+     * Hand the lines of a UTF-8 file to the visitor. See {@link #forEachLine(Path, Charset, LineVisitor)}.
+     *
+     * @param path    - the file to read
+     * @param visitor - receives the lines, without the line terminators
+     * @return - number of lines visited.
+     * @throws IOException - On failing to read the file.
+     */
+    public static long forEachLine(Path path, LineVisitor visitor) throws IOException {
+        return forEachLine(path, StandardCharsets.UTF_8, visitor);
+    }
+
+    /**
+     * Hand the lines of a file, one at a time, to the visitor. The next line is read only after the visitor returns, and
+     * reading stops as soon as the visitor returns false. The file is always closed. gzip and zlib files are
+     * decompressed as they are read.
+     *
+     * @param path    - the file to read
+     * @param charset - the encoding of the file
+     * @param visitor - receives the lines, without the line terminators
+     * @return - number of lines visited.
+     * @throws IOException - On failing to read the file.
+     */
+    public static long forEachLine(Path path, Charset charset, LineVisitor visitor) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(newInputStream(path), charset));
+        try {
+            long count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                count++;
+                if (!visitor.visit(line))
+                    break;
+            }
+            return count;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Scan the lines of a file as bytes, without decoding them. The file is memory mapped (in parts of at most 1GB that
+     * end on a line boundary) and scanned with {@link #forEachByteLine(ByteBuffer, ByteLineVisitor)}. gzip and zlib
+     * files cannot be mapped as lines: they are decompressed as they are read into a heap buffer, and scanned from there.
+     *
+     * @param path    - the file to read
+     * @param visitor - receives a view of every line
+     * @return - number of lines visited.
+     * @throws IOException - On failing to read the file.
+     */
+    public static long forEachByteLine(Path path, ByteLineVisitor visitor) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (isCompressed(channel))
+                return forEachInflatedByteLine(path, visitor);
+
+            long[] boundaries = lineAlignedChunks(channel, MAX_MAP_SIZE);
+            ByteSlice slice = new ByteSlice(ByteBuffer.allocate(0), 0, 0);
+            long[] count = new long[1];
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                if (boundaries[i + 1] - boundaries[i] > Integer.MAX_VALUE)
+                    throw new IOException("Line starting at [" + boundaries[i] + "] is too long to be mapped");
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i], boundaries[i + 1] - boundaries[i]);
+                if (!scanLines(buffer, slice, visitor, count))
+                    break;
+            }
+            return count[0];
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Scan the lines of a compressed file: decompress into a buffer, scan the complete lines and move the rest of the
+     * last line to the front before reading more.
+     */
+    private static long forEachInflatedByteLine(Path path, ByteLineVisitor visitor) throws IOException {
+        InputStream in = newInputStream(path);
+        try {
+            byte[] bytes = new byte[InflatingInputStream.BUFFER_SIZE];
+            ByteSlice slice = new ByteSlice(ByteBuffer.allocate(0), 0, 0);
+            long[] count = new long[1];
+            int length = 0;
+            for (int read; (read = in.read(bytes, length, bytes.length - length)) >= 0; ) {
+                // Only the new bytes can hold the end of a line.
+                int end = length + read;
+                while (end > length && bytes[end - 1] != '\n')
+                    end--;
+                boolean newLine = end > length;
+                length += read;
+                if (newLine) {
+                    if (!scanLines(ByteBuffer.wrap(bytes, 0, end), slice, visitor, count))
+                        return count[0];
+                    System.arraycopy(bytes, end, bytes, 0, length - end);
+                    length -= end;
+                }
+                if (length == bytes.length)
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            if (length > 0)
+                scanLines(ByteBuffer.wrap(bytes, 0, length), slice, visitor, count);
+            return count[0];
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Scan the lines of the buffer (from its position to its limit) as bytes. Lines end with "\n" or "\r\n" (the
+     * "\r" is stripped); unlike {@link BufferedReader#readLine()} a lone "\r" does not end a line.
+     * <p/>
+     * New lines are found eight bytes at a time (SWAR): every long read from the buffer is checked for a 0x0A byte with
+     * a few arithmetic operations instead of eight comparisons. The visitor gets one reused {@link ByteSlice}, so
+     * nothing is allocated per line unless the visitor asks for a String.
+     *
+     * @param buffer  - the bytes, typically a mapped or direct buffer. Its position and limit are not changed.
+     * @param visitor - receives a view of every line
+     * @return - number of lines visited.
+     */
+    public static long forEachByteLine(ByteBuffer buffer, ByteLineVisitor visitor) {
+        long[] count = new long[1];
+        scanLines(buffer, new ByteSlice(buffer, 0, 0), visitor, count);
+        return count[0];
+    }
+
+    /**
+     * @return false if the visitor stopped the scan.
+     */
+    private static boolean scanLines(ByteBuffer buffer, ByteSlice slice, ByteLineVisitor visitor, long[] count) {
+        // Little endian, so the lowest matching byte of a long is the first one in the buffer.
+        ByteBuffer bytes = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int end = bytes.limit();
+        int lineStart = bytes.position();
+        int position = lineStart;
+        while (true) {
+            int newLine = -1;
+            for (; position + 8 <= end; position += 8) {
+                long word = bytes.getLong(position) ^ NEW_LINES;
+                // Sets the high bit of the (first) zero byte, that is the first new line.
+                long found = (word - ONES) & ~word & HIGH_BITS;
+                if (found != 0) {
+                    newLine = position + (Long.numberOfTrailingZeros(found) >>> 3);
+                    break;
+                }
+            }
+            if (newLine < 0) {
+                for (; position < end; position++) {
+                    if (bytes.get(position) == '\n') {
+                        newLine = position;
+                        break;
+                    }
+                }
+            }
+            if (newLine < 0)
+                break;
+
+            int lineEnd = newLine > lineStart && bytes.get(newLine - 1) == '\r' ? newLine - 1 : newLine;
+            count[0]++;
+            if (!visitor.visit(slice.set(buffer, lineStart, lineEnd - lineStart)))
+                return false;
+            lineStart = position = newLine + 1;
+        }
+
+        if (lineStart < end) {
+            int lineEnd = bytes.get(end - 1) == '\r' ? end - 1 : end;
+            count[0]++;
+            return visitor.visit(slice.set(buffer, lineStart, lineEnd - lineStart));
+        }
+        return true;
+    }
+
+    /**
+     * Read a UTF-8 file in parallel, on the common ForkJoinPool. See
+     * {@link #forEachLineBatch(Path, Charset, ForkJoinPool, int, boolean, Consumer)}.
+     *
+     * @param path     - the file to read
+     * @param ordered  - true to receive the batches in file order
+     * @param consumer - receives the line batches
+     * @throws IOException - On failing to read the file.
+     */
+    public static void forEachLineBatch(Path path, boolean ordered, Consumer<? super List<String>> consumer) throws IOException {
+        forEachLineBatch(path, StandardCharsets.UTF_8, ForkJoinPool.commonPool(), CHUNK_SIZE, ordered, consumer);
+    }
+
+    /**
+     * Read a file in parallel. The file is split into byte ranges of about chunkSize bytes that end just after a new
+     * line, and every range is read, decoded and cut into lines by a task of the pool. The lines of each range are
+     * handed to the consumer as one batch.
+     * <p/>
+     * Ordered: the consumer is called on the calling thread, with the batches in file order. Unordered: the consumer is
+     * called by the pool threads as soon as a batch is ready, so it must be thread safe. Either way only a few ranges
+     * per pool thread are in memory at a time, and the method returns when all the batches have been consumed.
+     * <p/>
+     * Splitting on the new line byte is only correct for charsets that encode it as the single byte 0x0A and never use
+     * that byte inside another character (UTF-8, ASCII and the single byte charsets). gzip and zlib files cannot be
+     * split: they are decompressed and cut into batches of about chunkSize characters on the calling thread.
+     *
+     * @param path      - the file to read
+     * @param charset   - the encoding of the file
+     * @param pool      - pool that reads and decodes the ranges
+     * @param chunkSize - approximate number of bytes per batch
+     * @param ordered   - true to receive the batches in file order
+     * @param consumer  - receives the line batches, the lines without the line terminators
+     * @throws IOException - On failing to read the file.
+     * @throws IllegalArgumentException - if the charset cannot be split on new line bytes.
+     */
+    public static void forEachLineBatch(final Path path, final Charset charset, ForkJoinPool pool, int chunkSize,
+                                        final boolean ordered, final Consumer<? super List<String>> consumer) throws IOException {
+        if (!isNewLineSplittable(charset))
+            throw new IllegalArgumentException("Charset [" + charset + "] cannot be split on new line bytes");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Invalid chunk size [" + chunkSize + "]");
+
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (isCompressed(channel)) {
+                forEachInflatedLineBatch(path, charset, chunkSize, consumer);
+                return;
+            }
+
+            long[] boundaries = lineAlignedChunks(channel, chunkSize);
+            int window = 2 * pool.getParallelism();
+            ArrayDeque<ForkJoinTask<List<String>>> inFlight = new ArrayDeque<ForkJoinTask<List<String>>>();
+            try {
+                for (int chunk = 0; chunk < boundaries.length - 1 || !inFlight.isEmpty(); ) {
+                    if (chunk < boundaries.length - 1 && inFlight.size() < window) {
+                        final long from = boundaries[chunk], to = boundaries[chunk + 1];
+                        chunk++;
+                        inFlight.add(pool.submit(new Callable<List<String>>() {
+                            @Override
+                            public List<String> call() {
+                                List<String> lines;
+                                try {
+                                    lines = splitLines(decode(readRange(channel, from, to), charset));
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                                if (!ordered)
+                                    consumer.accept(lines);
+                                return lines;
+                            }
+                        }));
+                    } else {
+                        List<String> lines = inFlight.poll().join();
+                        if (ordered)
+                            consumer.accept(lines);
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                for (ForkJoinTask<List<String>> task : inFlight)
+                    task.cancel(false);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static void forEachInflatedLineBatch(Path path, Charset charset, int chunkSize,
+                                                 Consumer<? super List<String>> consumer) throws IOException {
+        LineIterator iterator = lineIterator(path, charset);
+        try {
+            List<String> lines = new ArrayList<String>();
+            long chars = 0;
+            while (iterator.hasNext()) {
+                String line = iterator.next();
+                lines.add(line);
+                chars += line.length() + 1;
+                if (chars >= chunkSize) {
+                    consumer.accept(lines);
+                    lines = new ArrayList<String>();
+                    chars = 0;
+                }
+            }
+            if (!lines.isEmpty())
+                consumer.accept(lines);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * @return true if the file starts like gzip or zlib data.
+     */
+    private static boolean isCompressed(FileChannel channel) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(InflatingInputStream.DETECT_SIZE);
+        while (start.hasRemaining() && channel.read(start, start.position()) > 0) {
+            // Read until the buffer is full, or the end of the file.
+        }
+        return InflatingInputStream.detect(start.array(), start.position()) != InflatingInputStream.NONE;
+    }
+
+    /**
+     * @return true if the new line of the charset is the single byte 0x0A and no other character contains that byte.
+     */
+    static boolean isNewLineSplittable(Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8))
+            return true;
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f)
+            return false;
+        byte[] newLine = "\n".getBytes(charset);
+        return newLine.length == 1 && newLine[0] == '\n';
+    }
+
+    /**
+     * Split the file into ranges of about chunkSize bytes, each ending just after a new line byte (or at the end of
+     * the file).
+     *
+     * @return the range boundaries: range i is from boundaries[i] (inclusive) to boundaries[i + 1] (exclusive).
+     */
+    static long[] lineAlignedChunks(FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<Long>();
+        boundaries.add(0L);
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long boundary = 0;
+        while (size - boundary > chunkSize) {
+            // Look for the first new line at or after the tentative end of the range.
+            long position = boundary + chunkSize - 1;
+            long newLine = -1;
+            while (newLine < 0 && position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0)
+                    break;
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        newLine = position + i;
+                        break;
+                    }
+                }
+                position += read;
+            }
+            if (newLine < 0 || newLine + 1 >= size)
+                break;
+            boundary = newLine + 1;
+            boundaries.add(boundary);
+        }
+        boundaries.add(size);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = boundaries.get(i);
+        return result;
+    }
+
+    /**
+     * Read the bytes from "from" (inclusive) to "to" (exclusive) with positional reads, so the channel can be shared
+     * by several threads.
+     */
+    private static ByteBuffer readRange(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes, from + bytes.position()) < 0)
+                break;
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+    /**
+     * Open a file for reading. gzip (including files with several members) and zlib files are recognized by their first
+     * bytes, whatever the file name, and decompressed as the stream is read. Other files are read as they are.
+     * <p/>
+     * Decompression uses a 64KB input buffer and an Inflater that are pooled and reused by later streams, and the gzip
+     * CRC and size are verified. Close the stream to return them to the pool.
+     *
+     * @param path - the file to read
+     * @return - stream of the (decompressed) file contents.
+     * @throws IOException - On failing to read the file.
+     */
+    public static InputStream newInputStream(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        try {
+            return InflatingInputStream.wrapIfCompressed(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read a whole file, decompressing it if it is gzip or zlib data.
+     *
+     * @return buffer with the (decompressed) file contents between its position and limit.
+     */
+    static ByteBuffer readContents(Path path) throws IOException {
+        ByteBuffer bytes = readBytes(path);
+        int format = InflatingInputStream.detect(bytes);
+        if (format == InflatingInputStream.NONE)
+            return bytes;
+        if (format == InflatingInputStream.GZIP)
+            return InflatingInputStream.inflate(bytes, format);
+        try {
+            return InflatingInputStream.inflate(bytes, format);
+        } catch (IOException e) {
+            // The zlib header is only two bytes: text that starts like zlib data is read as it is.
+            return bytes;
+        }
+    }
+
+    /**
+     * Read and decode a whole file.
+     *
+     * @return heap buffer with the characters from 0 to its position.
+     */
+    static CharBuffer decode(Path path, Charset charset) throws IOException {
+        return decode(readContents(path), charset);
+    }
+
+    /**
+     * Read a whole file: into a heap buffer of the file size, or as a read only mapping if it is large.
+     *
+     * @return buffer with the file contents between its position and limit.
+     */
+    static ByteBuffer readBytes(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File [" + path + "] is too large to read into memory: " + size + " bytes");
+            if (size >= MAP_THRESHOLD)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // Read until the buffer is full, or the file got shorter.
+            }
+            bytes.flip();
+            return bytes;
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Decode all the bytes into a single character buffer, sized for the worst case of the charset so that it does not
+     * have to grow (for UTF-8 and single byte charsets it is the number of bytes).
+     */
+    static CharBuffer decode(ByteBuffer bytes, Charset charset) throws IOException {
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        long maxChars = (long) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte());
+        CharBuffer chars = CharBuffer.allocate((int) Math.min(maxChars, Integer.MAX_VALUE - 8));
+
+        CoderResult result = decoder.decode(bytes, chars, true);
+        if (!result.isUnderflow())
+            result.throwException();
+        result = decoder.flush(chars);
+        if (!result.isUnderflow())
+            result.throwException();
+        return chars;
+    }
 
 }
@@ -0,0 +1,360 @@
+package org.colossaldb.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Streaming decoder of gzip (RFC 1952, including files with several members) and zlib (RFC 1950) data.
+ * <p/>
+ * The gzip header and trailer are parsed here, so the Inflater and the 64KB input buffer can come from a small pool
+ * and be reused by the next stream, instead of being allocated (and the Inflater's native memory freed) for every
+ * stream. Close the stream to return them to the pool.
+ */
+class InflatingInputStream extends InputStream {
+    static final int NONE = 0;
+    static final int GZIP = 1;
+    static final int ZLIB = 2;
+
+    static final int BUFFER_SIZE = 65536;
+    // Number of bytes looked at to detect the format.
+    static final int DETECT_SIZE = 512;
+    private static final int MAX_POOLED = 16;
+    // Largest initial output of inflate, as a multiple of the compressed size.
+    private static final long MAX_EXPECTED_RATIO = 8;
+
+    private static final ConcurrentLinkedQueue<Inflater> GZIP_INFLATERS = new ConcurrentLinkedQueue<Inflater>();
+    private static final ConcurrentLinkedQueue<Inflater> ZLIB_INFLATERS = new ConcurrentLinkedQueue<Inflater>();
+    private static final ConcurrentLinkedQueue<byte[]> BUFFERS = new ConcurrentLinkedQueue<byte[]>();
+
+    private final InputStream in;
+    private final boolean gzip;
+    private final CRC32 crc = new CRC32();
+    private final byte[] single = new byte[1];
+
+    private Inflater inflater;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    /**
+     * @param in     compressed data
+     * @param format GZIP or ZLIB
+     * @throws IOException if the gzip header cannot be read.
+     */
+    InflatingInputStream(InputStream in, int format) throws IOException {
+        this(in, borrowBuffer(), 0, format);
+    }
+
+    // The first "limit" bytes of the compressed data have already been read into the buffer.
+    private InflatingInputStream(InputStream in, byte[] buffer, int limit, int format) throws IOException {
+        if (format != GZIP && format != ZLIB)
+            throw new IllegalArgumentException("Invalid format [" + format + "]");
+        this.in = in;
+        this.gzip = format == GZIP;
+        this.buffer = buffer;
+        this.limit = limit;
+        this.inflater = borrowInflater(gzip);
+        if (gzip)
+            readHeader();
+    }
+
+    /**
+     * Look at the start of the stream and return a decompressing stream if it is gzip or zlib data, or a stream with the
+     * same bytes as the input otherwise.
+     *
+     * @param in the input
+     * @return stream of the (decompressed) bytes.
+     * @throws IOException on failing to read the input.
+     */
+    static InputStream wrapIfCompressed(InputStream in) throws IOException {
+        byte[] buffer = borrowBuffer();
+        int length = 0;
+        for (int read; length < DETECT_SIZE && (read = in.read(buffer, length, DETECT_SIZE - length)) > 0; )
+            length += read;
+
+        int format = detect(buffer, length);
+        if (format != NONE)
+            return new InflatingInputStream(in, buffer, length, format);
+        byte[] prefix = Arrays.copyOf(buffer, length);
+        recycle(buffer);
+        return new SequenceInputStream(new ByteArrayInputStream(prefix), in);
+    }
+
+    /**
+     * zlib data has only a two byte header, which plain text can match, so it must also inflate: to its end, or for a
+     * whole DETECT_SIZE window.
+     *
+     * @param bytes  the start of the data
+     * @param length number of bytes, less than DETECT_SIZE only if the data ends there
+     * @return the format of the data (NONE, GZIP or ZLIB) that starts with the bytes.
+     */
+    static int detect(byte[] bytes, int length) {
+        if (length < 2)
+            return NONE;
+        int b0 = bytes[0] & 0xff, b1 = bytes[1] & 0xff;
+        if (b0 == 0x1f && b1 == 0x8b && (length < 3 || bytes[2] == 8))
+            return GZIP;
+
+        // zlib: deflate with a window of at most 32KB, no preset dictionary, and a header checksum.
+        if ((b0 & 0x0f) != 8 || (b0 >> 4) > 7 || (b1 & 0x20) != 0 || ((b0 << 8) | b1) % 31 != 0)
+            return NONE;
+        // A text can start with such a header ("x^" for one), so check that the data inflates. The output is thrown
+        // away, so a small scratch array is enough.
+        Inflater inflater = borrowInflater(false);
+        try {
+            inflater.setInput(bytes, 0, length);
+            byte[] output = new byte[DETECT_SIZE];
+            while (!inflater.finished() && !inflater.needsInput() && !inflater.needsDictionary())
+                inflater.inflate(output);
+            // Running out of input proves little for a short text ("x^2\n"): unless the data ends, accept it only
+            // when a whole window inflated without error.
+            return inflater.finished() || length >= DETECT_SIZE ? ZLIB : NONE;
+        } catch (DataFormatException e) {
+            return NONE;
+        } finally {
+            recycle(inflater, false);
+        }
+    }
+
+    /**
+     * @return the format of the data (NONE, GZIP or ZLIB) from the position of the buffer.
+     */
+    static int detect(ByteBuffer bytes) {
+        byte[] start = new byte[Math.min(DETECT_SIZE, bytes.remaining())];
+        bytes.get(bytes.position(), start);
+        return detect(start, start.length);
+    }
+
+    /**
+     * Decompress all the bytes of the buffer (from its position to its limit).
+     *
+     * @param bytes  compressed data
+     * @param format GZIP or ZLIB
+     * @return heap buffer with the decompressed bytes between its position and limit.
+     * @throws IOException if the data is not valid.
+     */
+    static ByteBuffer inflate(ByteBuffer bytes, int format) throws IOException {
+        int remaining = bytes.remaining();
+        // A gzip file ends with the decompressed size (modulo 2^32) of its last member. It is only a hint: it misses
+        // the other members and can be anything in corrupt data, so it is capped and the output grows as needed.
+        long expected = 4L * remaining;
+        if (format == GZIP && remaining >= 18)
+            expected = Math.min(bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(bytes.limit() - 4) & 0xffffffffL,
+                    MAX_EXPECTED_RATIO * remaining);
+        byte[] output = new byte[(int) Math.min(Math.max(expected, 64), Integer.MAX_VALUE - 8)];
+
+        final ByteBuffer source = bytes.duplicate();
+        InputStream in = new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!source.hasRemaining())
+                    return -1;
+                len = Math.min(len, source.remaining());
+                source.get(b, off, len);
+                return len;
+            }
+        };
+        InflatingInputStream inflating = new InflatingInputStream(in, format);
+        try {
+            int length = 0;
+            for (int read; (read = inflating.read(output, length, output.length - length)) >= 0; ) {
+                length += read;
+                if (length == output.length) {
+                    if (length >= Integer.MAX_VALUE - 8)
+                        throw new IOException("Decompressed data is too large to read into memory");
+                    output = Arrays.copyOf(output, (int) Math.min(2L * length, Integer.MAX_VALUE - 8));
+                }
+            }
+            return ByteBuffer.wrap(output, 0, length);
+        } finally {
+            inflating.close();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read;
+        while ((read = read(single, 0, 1)) == 0) {
+            // Nothing decompressed yet.
+        }
+        return read < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (inflater == null)
+            throw new IOException("Stream closed");
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        if (eof)
+            return -1;
+        if (len == 0)
+            return 0;
+
+        while (true) {
+            if (inflater.needsInput()) {
+                if (!fill())
+                    throw new EOFException("Unexpected end of compressed data");
+                inflater.setInput(buffer, position, limit - position);
+            }
+            int read;
+            try {
+                read = inflater.inflate(b, off, len);
+            } catch (DataFormatException e) {
+                throw new ZipException(e.getMessage());
+            }
+            position = limit - inflater.getRemaining();
+            if (gzip && read > 0)
+                crc.update(b, off, read);
+            if (inflater.finished())
+                endOfMember();
+            if (read > 0)
+                return read;
+            if (eof)
+                return -1;
+            if (inflater.needsDictionary())
+                throw new ZipException("Preset dictionaries are not supported");
+        }
+    }
+
+    /**
+     * Return the Inflater and the buffer to the pool and close the input.
+     */
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            recycle(inflater, gzip);
+            recycle(buffer);
+            inflater = null;
+            buffer = null;
+        }
+        in.close();
+    }
+
+    /**
+     * Check the trailer of a gzip member and start the next member, if there is one.
+     */
+    private void endOfMember() throws IOException {
+        if (!gzip) {
+            eof = true;
+            return;
+        }
+        long expectedCrc = readIntLE();
+        long expectedSize = readIntLE();
+        if (expectedCrc != crc.getValue())
+            throw new ZipException("Corrupt gzip data: CRC mismatch");
+        if (expectedSize != (inflater.getBytesWritten() & 0xffffffffL))
+            throw new ZipException("Corrupt gzip data: size mismatch");
+
+        // Another member follows, or the end of the data (anything else after the member is ignored).
+        if (fill() && (buffer[position] & 0xff) == 0x1f) {
+            readHeader();
+            inflater.reset();
+            crc.reset();
+        } else {
+            eof = true;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (readByte() != 0x1f || readByte() != 0x8b)
+            throw new ZipException("Not in gzip format");
+        if (readByte() != 8)
+            throw new ZipException("Unsupported gzip compression method");
+        int flags = readByte();
+        skip(6); // Modification time, extra flags, operating system.
+        if ((flags & 4) != 0) // FEXTRA
+            skip(readByte() | (readByte() << 8));
+        if ((flags & 8) != 0) // FNAME
+            while (readByte() != 0) ;
+        if ((flags & 16) != 0) // FCOMMENT
+            while (readByte() != 0) ;
+        if ((flags & 2) != 0) // FHCRC
+            skip(2);
+    }
+
+    private long readIntLE() throws IOException {
+        return (readByte() | (readByte() << 8) | (readByte() << 16) | ((long) readByte() << 24));
+    }
+
+    private void skip(int count) throws IOException {
+        for (int i = 0; i < count; i++)
+            readByte();
+    }
+
+    private int readByte() throws IOException {
+        if (!fill())
+            throw new EOFException("Unexpected end of gzip data");
+        return buffer[position++] & 0xff;
+    }
+
+    /**
+     * @return false if there is no input left.
+     */
+    private boolean fill() throws IOException {
+        if (position < limit)
+            return true;
+        position = 0;
+        limit = Math.max(in.read(buffer, 0, buffer.length), 0);
+        return limit > 0;
+    }
+
+    private static Inflater borrowInflater(boolean nowrap) {
+        Inflater inflater = (nowrap ? GZIP_INFLATERS : ZLIB_INFLATERS).poll();
+        return inflater != null ? inflater : new Inflater(nowrap);
+    }
+
+    private static void recycle(Inflater inflater, boolean nowrap) {
+        ConcurrentLinkedQueue<Inflater> pool = nowrap ? GZIP_INFLATERS : ZLIB_INFLATERS;
+        if (pool.size() < MAX_POOLED) {
+            inflater.reset();
+            pool.offer(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+
+    private static byte[] borrowBuffer() {
+        byte[] buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new byte[BUFFER_SIZE];
+    }
+
+    private static void recycle(byte[] buffer) {
+        if (BUFFERS.size() < MAX_POOLED)
+            BUFFERS.offer(buffer);
+    }
+}
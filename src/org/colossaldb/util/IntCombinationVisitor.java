@@ -0,0 +1,32 @@
+package org.colossaldb.util;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Callback used by {@link IntCombinatoricUtil} to hand out combinations (or permutations) as element indices.
+ */
+public interface IntCombinationVisitor {
+    /**
+     * Visit one combination. The buffer is reused for the next combination, so it must be copied if it is to be
+     * kept and it must not be modified.
+     *
+     * @param indices indices of the elements of the current combination.
+     * @return true to continue the enumeration, false to stop it.
+     */
+    boolean visit(int[] indices);
+}
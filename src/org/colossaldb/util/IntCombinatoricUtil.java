@@ -0,0 +1,405 @@
+package org.colossaldb.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Core combinatorics engine working on element indices (0..N-1) only.
+ * <p/>
+ * The enumerations allocate their index buffer once and then update it in place for every combination, so no memory
+ * is allocated per visited combination. The generic collection based APIs in {@link CombinatoricUtil} are built on
+ * top of this class and map the indices back to the elements only when the result is needed.
+ */
+public class IntCombinatoricUtil {
+    private IntCombinatoricUtil() {
+    }
+
+    /**
+     * Visit all R-length combinations of the indices 0..N-1 in lexicographic order.
+     *
+     * @param n       number of elements
+     * @param r       number of elements in each combination. Zero or more than N gives no combinations.
+     * @param visitor callback for each combination
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachCombination(int n, int r, IntCombinationVisitor visitor) {
+        checkSizes(n, r);
+        if (r == 0 || r > n)
+            return true;
+
+        int[] indices = firstCombination(r);
+        do {
+            if (!visitor.visit(indices))
+                return false;
+        } while (nextCombination(indices, n));
+        return true;
+    }
+
+    /**
+     * Visit the R-length combinations of the indices 0..N-1 accepted by the filter, in lexicographic order.
+     * <p/>
+     * The combinations are built by backtracking: every prefix is checked by the filter as soon as it is extended, and
+     * a rejected prefix is never extended, so whole subtrees of combinations are skipped. The visitor can stop the
+     * search, e.g. after the first K matches.
+     *
+     * @param n       number of elements
+     * @param r       number of elements in each combination. Zero or more than N gives no combinations.
+     * @param filter  prefix filter. Complete combinations are checked too before being visited.
+     * @param visitor callback for each accepted combination
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachCombination(int n, int r, IntPrefixFilter filter, IntCombinationVisitor visitor) {
+        return forEachCombination(n, r, filter, false, visitor);
+    }
+
+    /**
+     * Same as {@link #forEachCombination(int, int, IntPrefixFilter, IntCombinationVisitor)}, optionally treating the
+     * filter as a monotone bound: when a prefix is rejected, the prefixes that only differ by a larger last index are
+     * rejected as well without being checked. This holds for example for an upper bound on the sum of weights, when
+     * the elements are sorted by increasing weight.
+     *
+     * @param n        number of elements
+     * @param r        number of elements in each combination. Zero or more than N gives no combinations.
+     * @param filter   prefix filter. Complete combinations are checked too before being visited.
+     * @param monotone true if rejecting a prefix also rejects it with any larger last index
+     * @param visitor  callback for each accepted combination
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachCombination(int n, int r, IntPrefixFilter filter, boolean monotone, IntCombinationVisitor visitor) {
+        checkSizes(n, r);
+        if (r == 0 || r > n)
+            return true;
+
+        int[] indices = new int[r];
+        // Position being filled. Positions before it hold an accepted prefix.
+        int k = 0;
+        while (k >= 0) {
+            if (indices[k] > n - r + k) {
+                // No more candidates for this position (not enough elements left after it), backtrack.
+                if (--k >= 0)
+                    indices[k]++;
+                continue;
+            }
+
+            if (!filter.accept(indices, k + 1)) {
+                // Skip the remaining candidates for this position too when the filter is a monotone bound.
+                indices[k] = monotone ? n : indices[k] + 1;
+            } else if (k == r - 1) {
+                if (!visitor.visit(indices))
+                    return false;
+                indices[k]++;
+            } else {
+                k++;
+                indices[k] = indices[k - 1] + 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visit all R-length combinations of the indices 0..N-1 in revolving door (Gray code) order: every combination
+     * differs from the previous one by exactly one element leaving and one element joining.
+     * <p/>
+     * This is Knuth's Algorithm R (The Art of Computer Programming, 7.2.1.3). Every step costs O(1) amortized and
+     * the visitor is told which element was removed and which was added, so per-combination aggregates (sums,
+     * scores) can be updated in O(1) instead of being recomputed in O(R). The indices are kept in increasing order.
+     *
+     * @param n       number of elements
+     * @param r       number of elements in each combination. Zero or more than N gives no combinations.
+     * @param visitor callback for each combination
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachRevolvingDoorCombination(int n, int r, IntSwapVisitor visitor) {
+        checkSizes(n, r);
+        if (r == 0 || r > n)
+            return true;
+
+        int[] indices = firstCombination(r);
+        if (!visitor.visit(indices, -1, -1))
+            return false;
+
+        if (r == n)
+            return true;
+
+        if (r == 1) {
+            // The algorithm needs two indices, single elements are simply walked in order.
+            for (int i = 1; i < n; i++) {
+                indices[0] = i;
+                if (!visitor.visit(indices, i - 1, i))
+                    return false;
+            }
+            return true;
+        }
+
+        // 1-based copy of the combination as in the algorithm, with c[r + 1] = n as sentinel. It is mirrored to the
+        // visited (0-based) buffer as it changes.
+        int[] c = new int[r + 2];
+        for (int j = 1; j <= r; j++)
+            c[j] = j - 1;
+        c[r + 1] = n;
+
+        boolean odd = (r & 1) == 1;
+        while (true) {
+            int removed, added;
+            // R3: the easy cases only move c[1].
+            if (odd && c[1] + 1 < c[2]) {
+                removed = c[1]++;
+                added = c[1];
+                indices[0] = c[1];
+            } else if (!odd && c[1] > 0) {
+                removed = c[1]--;
+                added = c[1];
+                indices[0] = c[1];
+            } else {
+                int j = 2;
+                // Odd R starts by trying to decrease c[2] (R4), even R by trying to increase it (R5).
+                boolean decrease = odd;
+                while (true) {
+                    if (decrease) {
+                        // R4: here c[j] == c[j - 1] + 1
+                        if (c[j] >= j) {
+                            removed = c[j];
+                            added = j - 2;
+                            c[j] = c[j - 1];
+                            c[j - 1] = j - 2;
+                            break;
+                        }
+                        j++;
+                        decrease = false;
+                    } else {
+                        // R5: here c[j - 1] == j - 2
+                        if (c[j] + 1 < c[j + 1]) {
+                            removed = j - 2;
+                            added = c[j] + 1;
+                            c[j - 1] = c[j];
+                            c[j] = c[j] + 1;
+                            break;
+                        }
+                        if (++j > r)
+                            return true;
+                        decrease = true;
+                    }
+                }
+                indices[j - 2] = c[j - 1];
+                indices[j - 1] = c[j];
+            }
+
+            if (!visitor.visit(indices, removed, added))
+                return false;
+        }
+    }
+
+    /**
+     * Visit all the permutations of the indices 0..N-1 in minimal change order (Heap's algorithm), reporting the two
+     * positions exchanged at every step.
+     *
+     * @param n       number of elements
+     * @param visitor callback for each permutation
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachMinimalChangePermutation(int n, IntSwapVisitor visitor) {
+        PermutationGenerator generator = new PermutationGenerator(n, n, PermutationOrder.MINIMAL_CHANGE);
+        while (generator.next()) {
+            if (!visitor.visit(generator.indices(), generator.getSwapFirst(), generator.getSwapSecond()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Visit all R-length permutations of the indices 0..N-1 in the given order.
+     *
+     * @param n       number of elements
+     * @param r       number of elements in each permutation. Zero or more than N gives no permutations.
+     * @param order   generation order
+     * @param visitor callback for each permutation
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachPermutation(int n, int r, PermutationOrder order, IntCombinationVisitor visitor) {
+        PermutationGenerator generator = new PermutationGenerator(n, r, order);
+        while (generator.next()) {
+            if (!visitor.visit(generator.indices()))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Visit all the distinct R-length combinations of a multiset in lexicographic order. The multiset holds
+     * counts[v] copies of every element v, and each combination is visited as a non-decreasing array of element
+     * indices, exactly once.
+     *
+     * @param counts  number of copies of each element
+     * @param r       number of elements in each combination. Zero or more than the multiset size gives no combinations.
+     * @param visitor callback for each combination
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachMultisetCombination(int[] counts, int r, IntCombinationVisitor visitor) {
+        int[] suffixTotals = suffixTotals(counts);
+        checkSizes(suffixTotals[0], r);
+        if (r == 0 || r > suffixTotals[0])
+            return true;
+
+        int[] combination = new int[r];
+        fillMultisetCombination(combination, 0, 0, counts);
+        do {
+            if (!visitor.visit(combination))
+                return false;
+        } while (nextMultisetCombination(combination, counts, suffixTotals));
+        return true;
+    }
+
+    /**
+     * Visit all the distinct R-length permutations of a multiset in lexicographic order. The multiset holds
+     * counts[v] copies of every element v, and each permutation is visited as an array of element indices,
+     * exactly once.
+     *
+     * @param counts  number of copies of each element
+     * @param r       number of elements in each permutation. Zero or more than the multiset size gives no permutations.
+     * @param visitor callback for each permutation
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachMultisetPermutation(int[] counts, int r, IntCombinationVisitor visitor) {
+        int[] all = expandMultiset(counts);
+        checkSizes(all.length, r);
+        if (r == 0 || r > all.length)
+            return true;
+
+        // Next permutation skips over equal elements, hence every distinct arrangement is generated once.
+        int[] permutation = r == all.length ? all : new int[r];
+        do {
+            if (permutation != all)
+                System.arraycopy(all, 0, permutation, 0, r);
+            if (!visitor.visit(permutation))
+                return false;
+        } while (PermutationGenerator.nextPermutation(all, r));
+        return true;
+    }
+
+    /**
+     * Move the multiset combination, in place, to the next one in lexicographic order.
+     *
+     * @param combination  non-decreasing element indices of the current combination
+     * @param counts       number of copies of each element
+     * @param suffixTotals suffixTotals[v] is the number of copies of the elements v and above
+     * @return false if the combination was already the last one.
+     */
+    static boolean nextMultisetCombination(int[] combination, int[] counts, int[] suffixTotals) {
+        int r = combination.length;
+        for (int i = r - 1; i >= 0; i--) {
+            // Smallest candidate for position i. None of its copies are used before i, since the prefix is smaller.
+            // If the positions from i onwards cannot be filled from it, no larger value can fill them either.
+            int value = combination[i] + 1;
+            if (value < counts.length && suffixTotals[value] >= r - i) {
+                fillMultisetCombination(combination, i, value, counts);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Fill the combination from position "from" with the smallest elements, starting at the given element.
+    static void fillMultisetCombination(int[] combination, int from, int value, int[] counts) {
+        for (int i = from; i < combination.length; value++) {
+            for (int copies = counts[value]; copies > 0 && i < combination.length; copies--)
+                combination[i++] = value;
+        }
+    }
+
+    // suffixTotals[v] is the number of copies of the elements v and above. suffixTotals[0] is the multiset size.
+    static int[] suffixTotals(int[] counts) {
+        int[] totals = new int[counts.length + 1];
+        for (int v = counts.length - 1; v >= 0; v--) {
+            if (counts[v] < 0)
+                throw new IllegalArgumentException("Negative element counts are not permitted: " + Arrays.toString(counts));
+            totals[v] = totals[v + 1] + counts[v];
+        }
+        return totals;
+    }
+
+    /**
+     * @param counts number of copies of each element
+     * @return all the element copies, in increasing order.
+     */
+    static int[] expandMultiset(int[] counts) {
+        int[] all = new int[suffixTotals(counts)[0]];
+        for (int v = 0, i = 0; v < counts.length; v++) {
+            for (int copies = 0; copies < counts[v]; copies++)
+                all[i++] = v;
+        }
+        return all;
+    }
+
+    /**
+     * @param r number of elements in the combination
+     * @return the first combination in lexicographic order, i.e. {0, 1, ..., r - 1}
+     */
+    public static int[] firstCombination(int r) {
+        int[] indices = new int[r];
+        for (int i = 0; i < r; i++)
+            indices[i] = i;
+        return indices;
+    }
+
+    /**
+     * Move the combination, in place, to the next combination in lexicographic order.
+     *
+     * @param indices strictly increasing indices of the current combination
+     * @param n       number of elements to choose from
+     * @return false if the combination was already the last one (it is left unchanged).
+     */
+    public static boolean nextCombination(int[] indices, int n) {
+        int r = indices.length;
+
+        // Find the right most index that can still be moved to the right.
+        int i = r - 1;
+        while (i >= 0 && indices[i] == n - r + i)
+            i--;
+
+        if (i < 0)
+            return false;
+
+        // Move it and reset all the indices after it to follow it.
+        indices[i]++;
+        for (int j = i + 1; j < r; j++)
+            indices[j] = indices[j - 1] + 1;
+        return true;
+    }
+
+    /**
+     * Map the indices back to the elements.
+     *
+     * @param elements the elements the indices refer to (should support fast random access)
+     * @param indices  indices of the selected elements
+     * @return new list with the selected elements, in the order of the indices.
+     */
+    public static <T> List<T> select(List<T> elements, int[] indices) {
+        List<T> selected = new ArrayList<T>(indices.length);
+        for (int index : indices)
+            selected.add(elements.get(index));
+        return selected;
+    }
+
+    static void checkSizes(int n, int r) {
+        if (n < 0 || r < 0)
+            throw new IllegalArgumentException("Negative sizes are not permitted. Input: n = " + n + ", r = " + r);
+    }
+}
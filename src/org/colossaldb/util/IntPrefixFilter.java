@@ -0,0 +1,34 @@
+package org.colossaldb.util;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Pruning callback for the backtracking enumeration in {@link IntCombinatoricUtil}.
+ */
+public interface IntPrefixFilter {
+    /**
+     * Decide whether a partial combination can still lead to a wanted combination. Rejecting a prefix skips every
+     * combination that starts with it.
+     *
+     * @param prefix buffer holding the prefix. Only the first "length" entries are valid, and the buffer must not be
+     *               modified.
+     * @param length number of elements in the prefix, 1 to R. A prefix of length R is a complete combination.
+     * @return false to prune the prefix and all its extensions.
+     */
+    boolean accept(int[] prefix, int length);
+}
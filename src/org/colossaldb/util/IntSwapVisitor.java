@@ -0,0 +1,39 @@
+package org.colossaldb.util;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Callback for the minimal change enumerations in {@link IntCombinatoricUtil}, which report every step as a single
+ * swap so that the callers can update their aggregates incrementally.
+ */
+public interface IntSwapVisitor {
+    /**
+     * Visit one combination or permutation. The buffer is reused for the next step, so it must be copied if it is to
+     * be kept and it must not be modified.
+     * <p/>
+     * For the first visit both the swap arguments are -1. For combinations the swap arguments are the element
+     * index that left the combination and the one that joined it. For permutations they are the two positions whose
+     * elements were exchanged.
+     *
+     * @param indices the current combination or permutation
+     * @param first   removed element (combinations) or first swapped position (permutations)
+     * @param second  added element (combinations) or second swapped position (permutations)
+     * @return true to continue the enumeration, false to stop it.
+     */
+    boolean visit(int[] indices, int first, int second);
+}
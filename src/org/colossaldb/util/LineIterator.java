@@ -0,0 +1,102 @@
+package org.colossaldb.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Iterator over the lines of a Reader. Lines are read one at a time with {@link BufferedReader#readLine()}, so the
+ * memory used does not depend on the size of the input.
+ * <p/>
+ * The reader is closed as soon as the last line has been read. Call {@link #close()} when stopping early.
+ * Read errors are thrown as UncheckedIOException.
+ */
+public class LineIterator implements Iterator<String>, Closeable {
+    private final BufferedReader reader;
+    private String nextLine;
+    private boolean finished;
+
+    public LineIterator(Reader reader) {
+        if (reader == null)
+            throw new IllegalArgumentException("Reader cannot be null");
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextLine != null)
+            return true;
+        if (finished)
+            return false;
+        try {
+            nextLine = reader.readLine();
+        } catch (IOException e) {
+            closeQuietly();
+            throw new UncheckedIOException(e);
+        }
+        if (nextLine == null) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        String line = nextLine;
+        nextLine = null;
+        return line;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stop the iteration and close the reader.
+     */
+    @Override
+    public void close() {
+        if (finished)
+            return;
+        finished = true;
+        nextLine = null;
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (UncheckedIOException e) {
+            // The read error is reported instead.
+        }
+    }
+}
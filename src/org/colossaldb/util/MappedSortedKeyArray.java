@@ -0,0 +1,452 @@
+package org.colossaldb.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Sorted array of fixed width byte keys kept outside the Java heap, either in direct buffers or in a memory mapped
+ * file. Keys are compared as unsigned bytes (lexicographic order), duplicates are kept. This data structure is NOT
+ * thread safe.
+ * <p/>
+ * The keys are stored back to back in segments of at most 1GB (a single buffer is limited to 2GB), so the number of
+ * keys is only limited by the address space / file size. Nothing but the segment buffers lives on the heap, so the
+ * data adds no GC pressure.
+ * <p/>
+ * A mapped file starts with a header (magic, key width, keys per segment, a merge flag, number of keys) followed by
+ * the keys. Reopening a file only maps it: no key is read until it is searched.
+ * <p/>
+ * The merge of {@link #addAll(byte[][])} rewrites the keys in place. The header flag is set (and forced to the
+ * device) before the first key is written and cleared once the segments it wrote are forced, so a file left behind by
+ * a crash in the middle of a merge is rejected by {@link #open(Path)} instead of being read as a sorted array.
+ * <p/>
+ * Lookups are binary searches, range scans walk the keys in order, and {@link #addAll(byte[][])} sorts the batch and
+ * merges it in place from the back, as {@link SortedArrayList#addAll(Collection)} does.
+ */
+public class MappedSortedKeyArray implements Closeable {
+    static final int MAGIC = 0x43534B41; // "CSKA"
+    static final int HEADER_SIZE = 32;
+    private static final int MAX_SEGMENT_BYTES = 1 << 30;
+    private static final int MIN_SEGMENT_KEYS = 1024;
+
+    private static final Comparator<byte[]> UNSIGNED = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] o1, byte[] o2) {
+            return Arrays.compareUnsigned(o1, o2);
+        }
+    };
+
+    private final int keyWidth;
+    private final int keysPerSegment;
+    // Null for the direct (in memory) array.
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+
+    private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+    private long size;
+
+    private MappedSortedKeyArray(int keyWidth, int keysPerSegment, FileChannel channel, MappedByteBuffer header, long size) {
+        this.keyWidth = keyWidth;
+        this.keysPerSegment = keysPerSegment;
+        this.channel = channel;
+        this.header = header;
+        this.size = size;
+    }
+
+    /**
+     * @param keyWidth number of bytes of every key
+     * @return new empty array kept in direct buffers.
+     */
+    public static MappedSortedKeyArray allocateDirect(int keyWidth) {
+        checkKeyWidth(keyWidth);
+        return new MappedSortedKeyArray(keyWidth, MAX_SEGMENT_BYTES / keyWidth, null, null, 0);
+    }
+
+    /**
+     * Create a new mapped file (an existing file is overwritten).
+     *
+     * @param path     the file
+     * @param keyWidth number of bytes of every key
+     * @return new empty array backed by the file.
+     * @throws IOException if the file cannot be created.
+     */
+    public static MappedSortedKeyArray create(Path path, int keyWidth) throws IOException {
+        return create(path, keyWidth, MAX_SEGMENT_BYTES / Math.max(keyWidth, 1));
+    }
+
+    static MappedSortedKeyArray create(Path path, int keyWidth, int keysPerSegment) throws IOException {
+        checkKeyWidth(keyWidth);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, keyWidth);
+            header.putInt(8, keysPerSegment);
+            header.putInt(12, 0);
+            header.putLong(16, 0);
+            return new MappedSortedKeyArray(keyWidth, keysPerSegment, channel, header, 0);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a file created by {@link #create(Path, int)}. The keys are mapped, not read.
+     *
+     * @param path the file
+     * @return the array backed by the file.
+     * @throws IOException if the file cannot be read, is not a key array file or was not written completely.
+     */
+    public static MappedSortedKeyArray open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("File [" + path + "] is too small to be a key array file");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            int keyWidth = header.getInt(4);
+            int keysPerSegment = header.getInt(8);
+            long size = header.getLong(16);
+            if (header.getInt(0) != MAGIC || keyWidth <= 0 || keysPerSegment <= 0 || size < 0
+                    || (long) keysPerSegment * keyWidth > MAX_SEGMENT_BYTES
+                    || HEADER_SIZE + size * keyWidth > channel.size())
+                throw new IOException("File [" + path + "] is not a valid key array file");
+            if (header.getInt(12) != 0)
+                throw new IOException("File [" + path + "] was left in the middle of a merge, its keys may be out of order");
+
+            MappedSortedKeyArray array = new MappedSortedKeyArray(keyWidth, keysPerSegment, channel, header, size);
+            array.ensureCapacity(size);
+            return array;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getKeyWidth() {
+        return keyWidth;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param index position of the key
+     * @return copy of the key at the position.
+     */
+    public byte[] get(long index) {
+        byte[] key = new byte[keyWidth];
+        get(index, key);
+        return key;
+    }
+
+    /**
+     * Copy the key at the position into the buffer.
+     *
+     * @param index position of the key
+     * @param key   buffer of getKeyWidth() bytes
+     */
+    public void get(long index, byte[] key) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        read(index, key);
+    }
+
+    public boolean contains(byte[] key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @param key key to search for
+     * @return index of the first occurrence of the key, or -1 if it is not in the array.
+     */
+    public long indexOf(byte[] key) {
+        long index = ceilingIndex(key);
+        return index < size && compareAt(index, ByteBuffer.wrap(key)) == 0 ? index : -1;
+    }
+
+    /**
+     * @param key key to search for
+     * @return index of the first key greater than or equal to the key, size() if there is none.
+     */
+    public long ceilingIndex(byte[] key) {
+        checkKey(key);
+        return lowerBound(ByteBuffer.wrap(key), 0, size);
+    }
+
+    /**
+     * @param key key to search for
+     * @return index of the first key greater than the key, size() if there is none.
+     */
+    public long higherIndex(byte[] key) {
+        checkKey(key);
+        return upperBound(ByteBuffer.wrap(key), 0, size);
+    }
+
+    /**
+     * Visit, in order, the keys from fromKey (inclusive) to toKey (exclusive). A null bound means the start (or the
+     * end) of the array.
+     *
+     * @param fromKey low end point of the range, inclusive
+     * @param toKey   high end point of the range, exclusive
+     * @param visitor receives the keys. The key buffer is reused.
+     * @return number of keys visited.
+     */
+    public long forEachInRange(byte[] fromKey, byte[] toKey, ByteKeyVisitor visitor) {
+        long from = fromKey == null ? 0 : ceilingIndex(fromKey);
+        long to = toKey == null ? size : Math.max(from, ceilingIndex(toKey));
+        byte[] key = new byte[keyWidth];
+        for (long index = from; index < to; index++) {
+            read(index, key);
+            if (!visitor.visit(index, key))
+                return index - from + 1;
+        }
+        return to - from;
+    }
+
+    /**
+     * Add one key. Moves all the larger keys, use {@link #addAll(byte[][])} for many keys.
+     *
+     * @param key the key
+     */
+    public void add(byte[] key) {
+        addAll(new byte[][]{key});
+    }
+
+    /**
+     * Sort the keys and merge them with the existing keys. The array grows by the number of new keys, and the merge
+     * runs from the back, so only the existing keys larger than the smallest new key are moved (once). A batch that
+     * sorts after the current last key is simply appended. Equal keys keep their order: existing keys stay before the
+     * new ones.
+     *
+     * @param keys keys of getKeyWidth() bytes each
+     * @return true if the array changed.
+     */
+    public boolean addAll(byte[][] keys) {
+        if (keys == null || keys.length == 0)
+            return false;
+        for (byte[] key : keys)
+            checkKey(key);
+
+        byte[][] newKeys = keys.clone();
+        Arrays.sort(newKeys, UNSIGNED);
+
+        long oldSize = size;
+        ensureCapacity(oldSize + newKeys.length);
+        // The existing keys up to the insertion point of the smallest new key do not move.
+        long start = upperBound(ByteBuffer.wrap(newKeys[0]), 0, oldSize);
+
+        startMerge();
+        long existing = oldSize - 1;
+        long target = oldSize + newKeys.length - 1;
+        byte[] buffer = new byte[keyWidth];
+        for (int next = newKeys.length - 1; next >= 0; next--) {
+            ByteBuffer key = ByteBuffer.wrap(newKeys[next]);
+            // Move the existing keys larger than this key to the back. Equal ones stay in front of it.
+            long stop = upperBound(key, start, existing + 1);
+            for (; existing >= stop; existing--, target--) {
+                read(existing, buffer);
+                write(target, buffer);
+            }
+            write(target--, newKeys[next]);
+        }
+        setSize(oldSize + newKeys.length);
+        endMerge(start, oldSize + newKeys.length);
+        return true;
+    }
+
+    public void clear() {
+        setSize(0);
+    }
+
+    /**
+     * Write the mapped changes to the storage device. Does nothing for the direct array.
+     */
+    public void force() {
+        if (channel == null)
+            return;
+        header.force();
+        for (ByteBuffer segment : segments)
+            ((MappedByteBuffer) segment).force();
+    }
+
+    /**
+     * Force the changes and close the file. The mappings are released by the garbage collector.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            segments.clear();
+            return;
+        }
+        if (channel.isOpen()) {
+            force();
+            channel.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * Set the merge flag of a mapped file and force the header page, before any key is written.
+     */
+    private void startMerge() {
+        if (header == null)
+            return;
+        header.putInt(12, 1);
+        header.force();
+    }
+
+    /**
+     * Force the segments holding the keys from "from" (inclusive) to "to" (exclusive), the only ones the merge wrote,
+     * then clear the merge flag and force the header page with the new size.
+     */
+    private void endMerge(long from, long to) {
+        if (header == null)
+            return;
+        for (long segment = from / keysPerSegment; segment <= (to - 1) / keysPerSegment; segment++)
+            ((MappedByteBuffer) segments.get((int) segment)).force();
+        header.putInt(12, 0);
+        header.force();
+    }
+
+    private void setSize(long newSize) {
+        size = newSize;
+        if (header != null)
+            header.putLong(16, newSize);
+    }
+
+    /**
+     * Make room for the keys. The last segment grows geometrically (it is remapped or reallocated) until it holds
+     * keysPerSegment keys, then new segments are added.
+     */
+    private void ensureCapacity(long minCapacity) {
+        int lastCapacity = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).capacity() / keyWidth;
+        long capacity = (long) Math.max(segments.size() - 1, 0) * keysPerSegment + lastCapacity;
+        if (minCapacity <= capacity)
+            return;
+
+        while (capacity < minCapacity) {
+            int segment = segments.size() - 1;
+            if (segment < 0 || lastCapacity == keysPerSegment) {
+                segment++;
+                lastCapacity = 0;
+                segments.add(null);
+            }
+            long needed = minCapacity - (long) segment * keysPerSegment;
+            int newCapacity = (int) Math.min(keysPerSegment,
+                    Math.max(needed, Math.max(MIN_SEGMENT_KEYS, 2L * lastCapacity)));
+            segments.set(segment, resize(segment, segments.get(segment), newCapacity));
+            capacity = (long) segment * keysPerSegment + newCapacity;
+            lastCapacity = newCapacity;
+        }
+    }
+
+    private ByteBuffer resize(int segment, ByteBuffer old, int newCapacity) {
+        if (channel == null) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(newCapacity * keyWidth);
+            if (old != null) {
+                old.clear();
+                buffer.put(old);
+                buffer.clear();
+            }
+            return buffer;
+        }
+        try {
+            long position = HEADER_SIZE + (long) segment * keysPerSegment * keyWidth;
+            // Mapping past the end of the file grows the file.
+            return channel.map(FileChannel.MapMode.READ_WRITE, position, (long) newCapacity * keyWidth);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot map segment [" + segment + "] of the key array file", e);
+        }
+    }
+
+    private void read(long index, byte[] key) {
+        segments.get((int) (index / keysPerSegment)).get((int) (index % keysPerSegment) * keyWidth, key, 0, keyWidth);
+    }
+
+    private void write(long index, byte[] key) {
+        segments.get((int) (index / keysPerSegment)).put((int) (index % keysPerSegment) * keyWidth, key, 0, keyWidth);
+    }
+
+    /**
+     * Compare the key (big endian, so whole longs compare like their bytes) with the key at the position.
+     */
+    private int compareAt(long index, ByteBuffer key) {
+        ByteBuffer segment = segments.get((int) (index / keysPerSegment));
+        int offset = (int) (index % keysPerSegment) * keyWidth;
+        int i = 0;
+        for (; i + 8 <= keyWidth; i += 8) {
+            int compareVal = Long.compareUnsigned(key.getLong(i), segment.getLong(offset + i));
+            if (compareVal != 0)
+                return compareVal;
+        }
+        for (; i < keyWidth; i++) {
+            int compareVal = (key.get(i) & 0xff) - (segment.get(offset + i) & 0xff);
+            if (compareVal != 0)
+                return compareVal;
+        }
+        return 0;
+    }
+
+    private long lowerBound(ByteBuffer key, long from, long to) {
+        while (from < to) {
+            long mid = (from + to) >>> 1;
+            if (compareAt(mid, key) <= 0)
+                to = mid;
+            else
+                from = mid + 1;
+        }
+        return from;
+    }
+
+    private long upperBound(ByteBuffer key, long from, long to) {
+        while (from < to) {
+            long mid = (from + to) >>> 1;
+            if (compareAt(mid, key) < 0)
+                to = mid;
+            else
+                from = mid + 1;
+        }
+        return from;
+    }
+
+    private void checkKey(byte[] key) {
+        if (key == null || key.length != keyWidth)
+            throw new IllegalArgumentException("Key must have [" + keyWidth + "] bytes");
+    }
+
+    private static void checkKeyWidth(int keyWidth) {
+        if (keyWidth <= 0 || keyWidth > MAX_SEGMENT_BYTES / MIN_SEGMENT_KEYS)
+            throw new IllegalArgumentException("Invalid key width [" + keyWidth + "]");
+    }
+}
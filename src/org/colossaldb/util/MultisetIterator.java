@@ -0,0 +1,99 @@
+package org.colossaldb.util;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Lazy iterator over the distinct R-length combinations or permutations of a multiset.
+ * <p/>
+ * The multiset is kept as distinct elements plus a count per element, so equal elements are never told apart and
+ * every distinct result is generated exactly once (no duplicates to be thrown away afterwards).
+ *
+ * @param <T> element type
+ */
+class MultisetIterator<T> implements Iterator<List<T>> {
+    private final List<T> elements;
+    private final int[] counts;
+    private final boolean permutations;
+    private final int r;
+
+    // Combinations: the r element indices, non-decreasing. Permutations: all the element copies, the first r of which
+    // are the current permutation.
+    private final int[] state;
+    private final int[] suffixTotals;
+
+    private boolean hasNext;
+
+    /**
+     * @param elementCounts number of copies of each distinct element. The iteration order of the map defines the
+     *                      element order used for the lexicographic ordering.
+     * @param r             number of elements in each result
+     * @param permutations  true for permutations, false for combinations
+     */
+    MultisetIterator(Map<T, Integer> elementCounts, int r, boolean permutations) {
+        this.elements = new ArrayList<T>(elementCounts.size());
+        this.counts = new int[elementCounts.size()];
+        int total = 0;
+        for (Map.Entry<T, Integer> entry : elementCounts.entrySet()) {
+            if (entry.getValue() == null || entry.getValue() < 0)
+                throw new IllegalArgumentException("Invalid count [" + entry.getValue() + "] for element [" + entry.getKey() + "]");
+            counts[elements.size()] = entry.getValue();
+            elements.add(entry.getKey());
+            total += entry.getValue();
+        }
+        IntCombinatoricUtil.checkSizes(total, r);
+
+        this.permutations = permutations;
+        this.r = r;
+        this.hasNext = r > 0 && r <= total;
+        if (permutations) {
+            this.state = IntCombinatoricUtil.expandMultiset(counts);
+            this.suffixTotals = null;
+        } else {
+            this.state = new int[r];
+            this.suffixTotals = IntCombinatoricUtil.suffixTotals(counts);
+            if (hasNext)
+                IntCombinatoricUtil.fillMultisetCombination(state, 0, 0, counts);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public List<T> next() {
+        if (!hasNext)
+            throw new NoSuchElementException();
+
+        List<T> result = new ArrayList<T>(r);
+        for (int i = 0; i < r; i++)
+            result.add(elements.get(state[i]));
+
+        hasNext = permutations ? PermutationGenerator.nextPermutation(state, r)
+                : IntCombinatoricUtil.nextMultisetCombination(state, counts, suffixTotals);
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Results cannot be removed.");
+    }
+}
@@ -0,0 +1,233 @@
+package org.colossaldb.util;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Pull based generator of the R-length permutations of the indices 0..N-1.
+ * <p/>
+ * The generator works on a single index buffer which is updated in place by every call to {@link #next()}, hence
+ * walking through all the permutations does not allocate any memory. Callers that need to hold on to a permutation
+ * must copy the buffer.
+ * <p/>
+ * Usage:
+ * <pre>
+ *     PermutationGenerator generator = new PermutationGenerator(10, 10, PermutationOrder.LEXICOGRAPHIC);
+ *     while (generator.next()) {
+ *         int[] indices = generator.indices();
+ *         ...
+ *     }
+ * </pre>
+ * This class is NOT thread safe.
+ */
+public class PermutationGenerator {
+    private final int n;
+    private final int r;
+    private final PermutationOrder order;
+
+    // Working array. In lexicographic mode it holds all N indices, the first R of which are the current permutation.
+    // In minimal change mode it holds the R indices of the current permutation.
+    private final int[] working;
+
+    // Buffer handed out to the callers. Same as the working array unless a strict subset is being permuted
+    // in lexicographic mode.
+    private final int[] indices;
+
+    // Minimal change mode only: Heap's algorithm stack counters and the current selection of R out of N indices.
+    private final int[] counters;
+    private final int[] selection;
+    private int heapIndex;
+
+    // Minimal change mode only: positions exchanged by the last step, -1 when a new selection was started.
+    private int swapFirst = -1;
+    private int swapSecond = -1;
+
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * @param n     number of elements to permute
+     * @param r     length of each permutation. Zero or more than N gives no permutations.
+     * @param order generation order
+     */
+    public PermutationGenerator(int n, int r, PermutationOrder order) {
+        IntCombinatoricUtil.checkSizes(n, r);
+        if (order == null)
+            throw new IllegalArgumentException("The permutation order must be set.");
+
+        this.n = n;
+        this.r = r;
+        this.order = order;
+        this.finished = r == 0 || r > n;
+
+        if (order == PermutationOrder.LEXICOGRAPHIC) {
+            working = new int[n];
+            for (int i = 0; i < n; i++)
+                working[i] = i;
+            indices = r == n ? working : new int[Math.min(r, n)];
+            counters = null;
+            selection = null;
+        } else {
+            working = new int[Math.min(r, n)];
+            indices = working;
+            counters = new int[working.length];
+            selection = IntCombinatoricUtil.firstCombination(working.length);
+        }
+    }
+
+    /**
+     * Advance to the next permutation. The first call moves to the first permutation.
+     *
+     * @return false once all the permutations have been generated.
+     */
+    public boolean next() {
+        if (finished)
+            return false;
+
+        if (!started) {
+            started = true;
+            if (order == PermutationOrder.MINIMAL_CHANGE)
+                startSelection();
+        } else if (order == PermutationOrder.LEXICOGRAPHIC ? !nextLexicographic() : !nextMinimalChange()) {
+            finished = true;
+            return false;
+        }
+
+        if (indices != working)
+            System.arraycopy(working, 0, indices, 0, r);
+        return true;
+    }
+
+    /**
+     * The current permutation. The returned buffer is reused and overwritten by the next call to {@link #next()}.
+     *
+     * @return indices of the current permutation.
+     */
+    public int[] indices() {
+        return indices;
+    }
+
+    /**
+     * @return in minimal change mode, the first of the two positions exchanged by the last step. -1 for the first
+     * permutation of every selection, and in lexicographic mode.
+     */
+    public int getSwapFirst() {
+        return swapFirst;
+    }
+
+    /**
+     * @return in minimal change mode, the second of the two positions exchanged by the last step. -1 for the first
+     * permutation of every selection, and in lexicographic mode.
+     */
+    public int getSwapSecond() {
+        return swapSecond;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public int getR() {
+        return r;
+    }
+
+    public PermutationOrder getOrder() {
+        return order;
+    }
+
+    private boolean nextLexicographic() {
+        return nextPermutation(working, r);
+    }
+
+    private boolean nextMinimalChange() {
+        // Heap's algorithm (iterative form), swapping exactly two positions per step.
+        while (heapIndex < r) {
+            if (counters[heapIndex] < heapIndex) {
+                swapFirst = (heapIndex & 1) == 0 ? 0 : counters[heapIndex];
+                swapSecond = heapIndex;
+                swap(working, swapFirst, swapSecond);
+                counters[heapIndex]++;
+                heapIndex = 1;
+                return true;
+            }
+            counters[heapIndex] = 0;
+            heapIndex++;
+        }
+
+        // All the orderings of the current selection are done, move to the next selection.
+        if (!IntCombinatoricUtil.nextCombination(selection, n))
+            return false;
+        startSelection();
+        return true;
+    }
+
+    private void startSelection() {
+        System.arraycopy(selection, 0, working, 0, r);
+        for (int i = 0; i < r; i++)
+            counters[i] = 0;
+        heapIndex = 1;
+        swapFirst = -1;
+        swapSecond = -1;
+    }
+
+    /**
+     * Rearrange the array so that its first R entries are the next R-length permutation in lexicographic order.
+     *
+     * @param array all the indices: the current permutation followed by the unused indices in increasing order
+     * @param r     length of the permutation
+     * @return false if the array held the last permutation.
+     */
+    static boolean nextPermutation(int[] array, int r) {
+        // The indices after the first R are always kept in increasing order. Reversing them makes the current state
+        // the largest arrangement with this prefix, so the next full permutation has the next R-length prefix.
+        if (r < array.length)
+            reverse(array, r, array.length - 1);
+        return nextPermutation(array);
+    }
+
+    /**
+     * Rearrange the array into the next permutation in lexicographic order.
+     *
+     * @param array the array to rearrange
+     * @return false if the array was already the last permutation (it is left unchanged).
+     */
+    static boolean nextPermutation(int[] array) {
+        int i = array.length - 2;
+        while (i >= 0 && array[i] >= array[i + 1])
+            i--;
+        if (i < 0)
+            return false;
+
+        int j = array.length - 1;
+        while (array[j] <= array[i])
+            j--;
+        swap(array, i, j);
+        reverse(array, i + 1, array.length - 1);
+        return true;
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int temp = array[i];
+        array[i] = array[j];
+        array[j] = temp;
+    }
+
+    private static void reverse(int[] array, int from, int to) {
+        for (; from < to; from++, to--)
+            swap(array, from, to);
+    }
+}
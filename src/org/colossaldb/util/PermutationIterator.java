@@ -0,0 +1,58 @@
+package org.colossaldb.util;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Lazy iterator over the R-length permutations of a list of N elements, backed by a {@link PermutationGenerator}.
+ *
+ * @param <T> element type
+ */
+class PermutationIterator<T> implements Iterator<List<T>> {
+    // Random access copy of the input elements.
+    private final List<T> elements;
+    private final PermutationGenerator generator;
+    private boolean hasNext;
+
+    PermutationIterator(Collection<T> collectionIn, int r, PermutationOrder order) {
+        this.elements = new ArrayList<T>(collectionIn);
+        this.generator = new PermutationGenerator(elements.size(), r, order);
+        this.hasNext = generator.next();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    public List<T> next() {
+        if (!hasNext)
+            throw new NoSuchElementException();
+
+        List<T> permutation = IntCombinatoricUtil.select(elements, generator.indices());
+        hasNext = generator.next();
+        return permutation;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Permutations cannot be removed.");
+    }
+}
@@ -0,0 +1,34 @@
+package org.colossaldb.util;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Order in which permutations are generated by {@link PermutationGenerator}.
+ */
+public enum PermutationOrder {
+    /**
+     * Lexicographic order of the element positions (the classic "next permutation" order).
+     */
+    LEXICOGRAPHIC,
+
+    /**
+     * Heap's algorithm: consecutive permutations differ by the swap of exactly two elements. When only R out of N
+     * elements are selected, the swap property holds among the permutations of the same selection.
+     */
+    MINIMAL_CHANGE
+}
@@ -0,0 +1,211 @@
+package org.colossaldb.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Spliterator over a range of ranks [position, end) of a lexicographically ordered enumeration.
+ * <p/>
+ * Splitting only halves the rank range; the index state of a part is unranked lazily on its first advance. Hence the
+ * parts are of (nearly) equal size and cost O(1) to create, which lets the parallel streams and fork/join tasks
+ * scale with the number of cores.
+ *
+ * @param <T> element type
+ */
+abstract class RankRangeSpliterator<T> implements Spliterator<List<T>> {
+    // Random access copy of the input elements. Shared by all the parts of a split.
+    final List<T> elements;
+    final int r;
+
+    // Rank of the next element to be returned and the (exclusive) end of the range.
+    private long position;
+    private final long end;
+
+    // Index state of the element at the current position. Null until the first advance.
+    private int[] state;
+
+    RankRangeSpliterator(List<T> elements, int r, long position, long end) {
+        this.elements = elements;
+        this.r = r;
+        this.position = position;
+        this.end = end;
+    }
+
+    /**
+     * @param rank rank to move to
+     * @return index state of the element at the rank
+     */
+    abstract int[] seek(long rank);
+
+    /**
+     * Move the index state to the next element.
+     *
+     * @param state the index state
+     */
+    abstract void advance(int[] state);
+
+    /**
+     * Create the spliterator for another range of the same enumeration.
+     */
+    abstract RankRangeSpliterator<T> newPart(long position, long end);
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<T>> action) {
+        if (position >= end)
+            return false;
+
+        if (state == null)
+            state = seek(position);
+        else
+            advance(state);
+        position++;
+        action.accept(select(state));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super List<T>> action) {
+        if (position >= end)
+            return;
+
+        if (state == null)
+            state = seek(position);
+        else
+            advance(state);
+        action.accept(select(state));
+        for (position++; position < end; position++) {
+            advance(state);
+            action.accept(select(state));
+        }
+    }
+
+    @Override
+    public Spliterator<List<T>> trySplit() {
+        long remaining = end - position;
+        if (remaining < 2)
+            return null;
+
+        // Hand out the first half, keep the second half.
+        long middle = position + remaining / 2;
+        RankRangeSpliterator<T> prefix = newPart(position, middle);
+        position = middle;
+        state = null;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    private List<T> select(int[] state) {
+        List<T> selected = new ArrayList<T>(r);
+        for (int i = 0; i < r; i++)
+            selected.add(elements.get(state[i]));
+        return selected;
+    }
+
+    /**
+     * Combinations in lexicographic order.
+     */
+    static class Combinations<T> extends RankRangeSpliterator<T> {
+        Combinations(Collection<T> collectionIn, int r) {
+            this(new ArrayList<T>(collectionIn), r, 0, count(collectionIn.size(), r));
+        }
+
+        private Combinations(List<T> elements, int r, long position, long end) {
+            super(elements, r, position, end);
+        }
+
+        private static long count(int n, int r) {
+            IntCombinatoricUtil.checkSizes(n, r);
+            return r == 0 ? 0 : CombinatoricUtil.binomial(n, r);
+        }
+
+        @Override
+        int[] seek(long rank) {
+            return CombinatoricUtil.unrankCombination(rank, elements.size(), r);
+        }
+
+        @Override
+        void advance(int[] state) {
+            IntCombinatoricUtil.nextCombination(state, elements.size());
+        }
+
+        @Override
+        RankRangeSpliterator<T> newPart(long position, long end) {
+            return new Combinations<T>(elements, r, position, end);
+        }
+    }
+
+    /**
+     * R-length permutations in lexicographic order. The state holds all N indices: the current permutation followed
+     * by the unused indices in increasing order.
+     */
+    static class Permutations<T> extends RankRangeSpliterator<T> {
+        Permutations(Collection<T> collectionIn, int r) {
+            this(new ArrayList<T>(collectionIn), r, 0, count(collectionIn.size(), r));
+        }
+
+        private Permutations(List<T> elements, int r, long position, long end) {
+            super(elements, r, position, end);
+        }
+
+        private static long count(int n, int r) {
+            IntCombinatoricUtil.checkSizes(n, r);
+            return r == 0 || r > n ? 0 : CombinatoricUtil.permutationCount(n, r);
+        }
+
+        @Override
+        int[] seek(long rank) {
+            int n = elements.size();
+            int[] permutation = CombinatoricUtil.unrankPermutation(rank, n, r);
+            int[] state = new int[n];
+            boolean[] used = new boolean[n];
+            for (int i = 0; i < r; i++) {
+                state[i] = permutation[i];
+                used[permutation[i]] = true;
+            }
+            for (int value = 0, i = r; value < n; value++) {
+                if (!used[value])
+                    state[i++] = value;
+            }
+            return state;
+        }
+
+        @Override
+        void advance(int[] state) {
+            PermutationGenerator.nextPermutation(state, r);
+        }
+
+        @Override
+        RankRangeSpliterator<T> newPart(long position, long end) {
+            return new Permutations<T>(elements, r, position, end);
+        }
+    }
+}
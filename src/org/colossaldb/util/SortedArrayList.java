@@ -1,6 +1,7 @@
 package org.colossaldb.util;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Copyright (C) 2013  Jayaprakash Pasala
@@ -34,49 +35,187 @@ import java.util.*;
  * The sorted array list uses insertion sort as the internal algorithm for single inserts and uses merge sort
  * for bulk inserts. Efficiency wise, construction of this array with all the elements at the start will perform the best.
  * <p/>
- * Ideally restrict to a few insertion of elements.
+ * Ideally restrict to a few insertion of elements. For large lists with frequent single inserts use
+ * {@link TieredSortedList}, which keeps the elements in small blocks.
  * <p/>
- * Other thoughts: We could use a tree representation internally.
+ * How elements that compare equal to an element already in the list are handled is chosen at construction time
+ * (see {@link DuplicatePolicy}). The default keeps all of them.
  *
  * @param <E> - the parameter type.
  */
 public class SortedArrayList<E> extends ArrayList<E> {
+    // Merge by binary searching the existing elements, when the list is this many times larger than the new batch.
+    private static final int GALLOP_RATIO = 16;
+
+    /**
+     * What to do with an element that compares equal to an element already in the list.
+     */
+    public enum DuplicatePolicy {
+        /**
+         * Keep all the elements. A single add puts the element next to any one of the equal elements (the original
+         * behaviour of this list).
+         */
+        ALLOW,
+        /**
+         * Keep all the elements. Equal elements are kept in insertion order.
+         */
+        STABLE,
+        /**
+         * Set semantics: adding an element equal to one already in the list (or adding a batch with equal
+         * elements) throws IllegalArgumentException and leaves the list unchanged.
+         */
+        REJECT,
+        /**
+         * Set semantics: the element already in the list (or the first one of a batch) is kept, later equal ones
+         * are ignored.
+         */
+        KEEP_FIRST,
+        /**
+         * Set semantics: the last element added replaces the equal element in the list.
+         */
+        KEEP_LAST
+    }
+
     final Comparator<E> comparator;
+    final DuplicatePolicy duplicatePolicy;
 
     public SortedArrayList() {
         this((Comparator<E>) null);
     }
 
     public SortedArrayList(Comparator<E> comparator) {
+        this(comparator, DuplicatePolicy.ALLOW);
+    }
+
+    public SortedArrayList(DuplicatePolicy duplicatePolicy) {
+        this(null, duplicatePolicy);
+    }
+
+    public SortedArrayList(Comparator<E> comparator, DuplicatePolicy duplicatePolicy) {
         super();
+        if (duplicatePolicy == null)
+            throw new IllegalArgumentException("Duplicate policy cannot be null");
         this.comparator = comparator;
+        this.duplicatePolicy = duplicatePolicy;
     }
 
-    public SortedArrayList(Comparator<E> comparator, Collection<E> elements) {
+    public SortedArrayList(Comparator<E> comparator, DuplicatePolicy duplicatePolicy, Collection<E> elements) {
         // Don't call the super with elements as argument as we have to sort them.
-        super();
-        this.comparator = comparator;
+        this(comparator, duplicatePolicy);
         addAll(elements);
     }
 
+    public SortedArrayList(Comparator<E> comparator, Collection<E> elements) {
+        this(comparator, DuplicatePolicy.ALLOW, elements);
+    }
+
     public SortedArrayList(Collection<E> elements) {
         this(null, elements);
     }
 
+    public DuplicatePolicy getDuplicatePolicy() {
+        return duplicatePolicy;
+    }
+
     /**
-     * Sort the list.
+     * Sort the array.
      *
      * @param comparator Comparator to use
-     * @param list       list
-     * @param <T>        parameter type of the list
+     * @param array      array
+     * @param <T>        parameter type of the array
      */
-    @SuppressWarnings("unchecked")
-    private static <T> void mySort(Comparator<T> comparator, List<? extends T> list) {
+    private static <T> void mySort(Comparator<T> comparator, T[] array) {
         if (comparator == null)
-            // Hack: This will fail, if the underlying object of type <T> does not implement Comparable interface
-            Collections.sort((List<? extends Comparable>) list);
+            // This will fail, if the underlying object of type <T> does not implement Comparable interface
+            Arrays.sort(array);
         else
-            Collections.sort(list, comparator);
+            Arrays.sort(array, comparator);
+    }
+
+    /**
+     * Merge sorted lists into a new list with a k-way merge. The inputs are not sorted again, the merge costs
+     * O(total * log k) for k lists. Equal elements keep the order of the lists.
+     *
+     * @param comparator comparator of the new list. All the lists must be sorted with it (null for the natural order).
+     * @param lists      the lists to merge
+     * @param <E>        element type
+     * @return new list, presized to the total number of elements.
+     */
+    public static <E> SortedArrayList<E> merge(Comparator<E> comparator, Collection<? extends SortedArrayList<? extends E>> lists) {
+        if (lists == null)
+            throw new IllegalArgumentException("Lists cannot be null");
+        int total = 0;
+        List<Iterator<? extends E>> sources = new ArrayList<Iterator<? extends E>>(lists.size());
+        for (SortedArrayList<? extends E> list : lists) {
+            if (list == null)
+                throw new IllegalArgumentException("Lists cannot contain null");
+            total += list.size();
+            sources.add(list.iterator());
+        }
+        return merge(comparator, sources, total, false);
+    }
+
+    /**
+     * Merge sorted iterators into a new list with a k-way merge. The inputs are trusted to be sorted, unless
+     * checkOrder is set.
+     *
+     * @param comparator   comparator of the new list. All the sources must be sorted with it (null for the natural
+     *                     order).
+     * @param sources      the sorted sources
+     * @param expectedSize number of elements expected, used to presize the list
+     * @param checkOrder   true to verify the order of every source
+     * @param <E>          element type
+     * @return new list with all the elements.
+     * @throws IllegalArgumentException if checkOrder is set and a source is not sorted.
+     */
+    public static <E> SortedArrayList<E> merge(Comparator<E> comparator, List<? extends Iterator<? extends E>> sources,
+                                               int expectedSize, boolean checkOrder) {
+        final SortedArrayList<E> result = new SortedArrayList<E>(comparator);
+        result.ensureCapacity(expectedSize);
+        merge(comparator, sources, checkOrder, new Consumer<E>() {
+            @Override
+            public void accept(E e) {
+                result.append(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Merge sorted iterators with a k-way merge and hand every element, in order, to the consumer. Nothing is
+     * buffered.
+     *
+     * @param comparator comparator the sources are sorted with (null for the natural order)
+     * @param sources    the sorted sources
+     * @param checkOrder true to verify the order of every source
+     * @param consumer   receives the merged elements
+     * @param <E>        element type
+     * @throws IllegalArgumentException if checkOrder is set and a source is not sorted.
+     */
+    public static <E> void merge(Comparator<? super E> comparator, List<? extends Iterator<? extends E>> sources,
+                                 boolean checkOrder, Consumer<? super E> consumer) {
+        Iterator<E> merged = mergingIterator(comparator, sources, checkOrder);
+        while (merged.hasNext())
+            consumer.accept(merged.next());
+    }
+
+    /**
+     * Lazy k-way merge of sorted iterators. See {@link #merge(Comparator, List, boolean, Consumer)}.
+     *
+     * @param comparator comparator the sources are sorted with (null for the natural order)
+     * @param sources    the sorted sources
+     * @param checkOrder true to verify the order of every source
+     * @param <E>        element type
+     * @return iterator over the merged elements.
+     */
+    public static <E> Iterator<E> mergingIterator(Comparator<? super E> comparator, List<? extends Iterator<? extends E>> sources,
+                                                  boolean checkOrder) {
+        return new SortedMergeIterator<E>(comparator, sources, checkOrder);
+    }
+
+    // Add an element known to sort after the last element.
+    private void append(E element) {
+        super.add(element);
     }
 
     @Override
@@ -84,9 +223,18 @@ public class SortedArrayList<E> extends ArrayList<E> {
         return super.hashCode();
     }
 
+    /**
+     * Add the element at its sorted position, subject to the duplicate policy of this list.
+     *
+     * @param element element to add
+     * @return true if the list changed, false if an equal element is kept instead (KEEP_FIRST).
+     */
     @SuppressWarnings("unchecked")
     @Override
     public boolean add(E element) {
+        if (duplicatePolicy != DuplicatePolicy.ALLOW)
+            return addWithPolicy(element);
+
         if (super.isEmpty()) {
             return super.add(element);
         }
@@ -117,6 +265,29 @@ public class SortedArrayList<E> extends ArrayList<E> {
         return true;
     }
 
+    private boolean addWithPolicy(E element) {
+        int size = super.size();
+        if (duplicatePolicy == DuplicatePolicy.STABLE) {
+            super.add(upperBound(element, 0, size), element);
+            return true;
+        }
+
+        int index = lowerBound(element, 0, size);
+        if (index < size && internalCompare(element, super.get(index)) == 0) {
+            switch (duplicatePolicy) {
+                case REJECT:
+                    throw new IllegalArgumentException("Duplicate element [" + element + "], equal to [" + super.get(index) + "]");
+                case KEEP_FIRST:
+                    return false;
+                default: // KEEP_LAST
+                    super.set(index, element);
+                    return true;
+            }
+        }
+        super.add(index, element);
+        return true;
+    }
+
     @Override
     public void add(int index, E element) {
         throw new UnsupportedOperationException("Insertion at a specified position is not permitted as this operation might break" +
@@ -125,50 +296,299 @@ public class SortedArrayList<E> extends ArrayList<E> {
 
     /**
      * Sort the input collection and then merge it with the existing list (using simple merge sort algorithm).
+     * <p/>
+     * The merge is done in place, from the back of the grown list, so only the existing elements that are larger
+     * than the smallest new element are moved (once). When the new elements all sort after the current last element
+     * they are simply appended. When the batch is much smaller than the list, the position of every new element is
+     * found with a binary search instead of comparing it with all the elements it passes.
+     * <p/>
+     * Equal elements keep their order: existing elements stay before the new ones, and the new ones keep the order
+     * of the input collection.
+     * <p/>
+     * With the set policies (REJECT, KEEP_FIRST, KEEP_LAST) the sorted batch is deduplicated first, and every
+     * remaining element is looked up in the list with a binary search. Elements already present are dropped (or
+     * replace the existing one for KEEP_LAST) before the merge. With REJECT nothing is added if any element is a
+     * duplicate.
      *
      * @param eCollection - the collection to be added.
      * @return - returns "true" if the collection is changed.
      */
+    @SuppressWarnings("unchecked")
     @Override
     public boolean addAll(Collection<? extends E> eCollection) {
         if (eCollection == null || eCollection.isEmpty())
             return false;
 
-        List<? extends E> newElements = new ArrayList<E>(eCollection);
+        E[] newElements = (E[]) eCollection.toArray();
         mySort(comparator, newElements);
-        List<E> localList = new ArrayList<E>(super.size() + eCollection.size());
-        Iterator<E> first = super.iterator();
-        Iterator<? extends E> second = newElements.iterator();
-        for (E firstObj = getNext(first), secondObj = getNext(second); firstObj != null || secondObj != null; ) {
-            if (firstObj == null) {
-                localList.add(secondObj);
-                secondObj = getNext(second);
-                continue;
-            }
 
-            if (secondObj == null) {
-                localList.add(firstObj);
-                firstObj = getNext(first);
-                continue;
-            }
+        boolean changed = false;
+        int count = newElements.length;
+        if (duplicatePolicy == DuplicatePolicy.REJECT || duplicatePolicy == DuplicatePolicy.KEEP_FIRST
+                || duplicatePolicy == DuplicatePolicy.KEEP_LAST) {
+            count = 0;
+            int size = super.size();
+            int searchFrom = 0; // The batch is sorted, so the searches only move forward.
+            for (int runStart = 0, runEnd; runStart < newElements.length; runStart = runEnd) {
+                runEnd = runStart + 1;
+                while (runEnd < newElements.length && internalCompare(newElements[runStart], newElements[runEnd]) == 0)
+                    runEnd++;
+                if (duplicatePolicy == DuplicatePolicy.REJECT && runEnd - runStart > 1)
+                    throw new IllegalArgumentException("Duplicate element [" + newElements[runStart + 1] + "], equal to [" + newElements[runStart] + "]");
+                E element = duplicatePolicy == DuplicatePolicy.KEEP_LAST ? newElements[runEnd - 1] : newElements[runStart];
 
-            int compareVal = internalCompare(firstObj, secondObj);
-            if (compareVal < 0) {
-                localList.add(firstObj);
-                firstObj = getNext(first);
-            } else {
-                localList.add(secondObj);
-                secondObj = getNext(second);
+                searchFrom = lowerBound(element, searchFrom, size);
+                if (searchFrom < size && internalCompare(element, super.get(searchFrom)) == 0) {
+                    if (duplicatePolicy == DuplicatePolicy.REJECT)
+                        throw new IllegalArgumentException("Duplicate element [" + element + "], equal to [" + super.get(searchFrom) + "]");
+                    if (duplicatePolicy == DuplicatePolicy.KEEP_LAST) {
+                        super.set(searchFrom, element);
+                        changed = true;
+                    }
+                } else {
+                    newElements[count++] = element;
+                }
             }
+            if (count == 0)
+                return changed;
+        }
+        List<E> batch = Arrays.asList(newElements).subList(0, count);
+
+        int oldSize = super.size();
+        // Fast path: the whole batch goes after the current last element (this includes the empty list).
+        if (oldSize == 0 || internalCompare(newElements[0], super.get(oldSize - 1)) >= 0) {
+            super.addAll(batch);
+            return true;
+        }
+
+        // The existing elements up to the insertion point of the smallest new element do not move.
+        int start = upperBound(newElements[0], 0, oldSize);
+
+        // Grow the list to its final size. The added slots are overwritten by the merge below.
+        super.addAll(batch);
+
+        int existing = oldSize - 1;
+        int target = super.size() - 1;
+        boolean gallop = (long) count * GALLOP_RATIO < oldSize - start;
+        for (int next = count - 1; next >= 0; next--) {
+            E element = newElements[next];
+            // Move the existing elements larger than this element to the back. Equal ones stay in front of it.
+            int stop = gallop ? upperBound(element, start, existing + 1) : start;
+            while (existing >= stop && (gallop || internalCompare(super.get(existing), element) > 0))
+                super.set(target--, super.get(existing--));
+            super.set(target--, element);
+        }
+        return true;
+    }
+
+    /**
+     * Binary search for the element. Elements that compare equal to it are checked with equals.
+     *
+     * @param o element whose presence in this list is to be tested
+     * @return true if this list contains the element.
+     */
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Binary search for the first occurrence of the element. Elements that compare equal to it are checked with
+     * equals.
+     *
+     * @param o element to search for
+     * @return the index of the first occurrence of the element in this list, or -1 if it is not in the list.
+     */
+    @Override
+    public int indexOf(Object o) {
+        E key = asKey(o);
+        if (key == null)
+            return -1;
+
+        int to = super.size();
+        int index = lowerBound(key, 0, to);
+        for (; index < to && internalCompare(key, super.get(index)) == 0; index++) {
+            if (o.equals(super.get(index)))
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Binary search for the last occurrence of the element. Elements that compare equal to it are checked with
+     * equals.
+     *
+     * @param o element to search for
+     * @return the index of the last occurrence of the element in this list, or -1 if it is not in the list.
+     */
+    @Override
+    public int lastIndexOf(Object o) {
+        E key = asKey(o);
+        if (key == null)
+            return -1;
+
+        int index = upperBound(key, 0, super.size()) - 1;
+        for (; index >= 0 && internalCompare(key, super.get(index)) == 0; index--) {
+            if (o.equals(super.get(index)))
+                return index;
         }
+        return -1;
+    }
 
-        super.clear();
-        super.addAll(localList);
+    /**
+     * Remove the first occurrence of the element, found with a binary search.
+     *
+     * @param o element to be removed from this list, if present
+     * @return true if this list contained the element.
+     */
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        super.remove(index);
         return true;
     }
 
-    private E getNext(Iterator<? extends E> iterator) {
-        return iterator.hasNext() ? iterator.next() : null;
+    /**
+     * @param e the value to match
+     * @return the greatest element less than or equal to e, or null if there is no such element.
+     */
+    public E floor(E e) {
+        int index = upperBound(e, 0, super.size()) - 1;
+        return index >= 0 ? super.get(index) : null;
+    }
+
+    /**
+     * @param e the value to match
+     * @return the least element greater than or equal to e, or null if there is no such element.
+     */
+    public E ceiling(E e) {
+        int index = lowerBound(e, 0, super.size());
+        return index < super.size() ? super.get(index) : null;
+    }
+
+    /**
+     * @param e the value to match
+     * @return the greatest element strictly less than e, or null if there is no such element.
+     */
+    public E lower(E e) {
+        int index = lowerBound(e, 0, super.size()) - 1;
+        return index >= 0 ? super.get(index) : null;
+    }
+
+    /**
+     * @param e the value to match
+     * @return the least element strictly greater than e, or null if there is no such element.
+     */
+    public E higher(E e) {
+        int index = upperBound(e, 0, super.size());
+        return index < super.size() ? super.get(index) : null;
+    }
+
+    /**
+     * View of the elements ranging from fromKey to toKey. Nothing is copied, the view is backed by this list (see
+     * {@link #subList(int, int)}). Elements cannot be added through the view, and replacing elements through it must
+     * not break the order.
+     *
+     * @param fromKey       low end point of the view
+     * @param fromInclusive true if the low end point is to be included in the view
+     * @param toKey         high end point of the view
+     * @param toInclusive   true if the high end point is to be included in the view
+     * @return a view of the portion of this list whose elements range from fromKey to toKey.
+     */
+    public List<E> subList(E fromKey, boolean fromInclusive, E toKey, boolean toInclusive) {
+        if (internalCompare(fromKey, toKey) > 0)
+            throw new IllegalArgumentException("fromKey [" + fromKey + "] is greater than toKey [" + toKey + "]");
+
+        int size = super.size();
+        int from = fromInclusive ? lowerBound(fromKey, 0, size) : upperBound(fromKey, 0, size);
+        int to = toInclusive ? upperBound(toKey, from, size) : lowerBound(toKey, from, size);
+        return super.subList(from, Math.max(from, to));
+    }
+
+    /**
+     * View of the elements less than (or equal to, if inclusive is true) toKey. See
+     * {@link #subList(Object, boolean, Object, boolean)}.
+     *
+     * @param toKey     high end point of the view
+     * @param inclusive true if the high end point is to be included in the view
+     * @return a view of the portion of this list whose elements are less than toKey.
+     */
+    public List<E> headList(E toKey, boolean inclusive) {
+        int size = super.size();
+        return super.subList(0, inclusive ? upperBound(toKey, 0, size) : lowerBound(toKey, 0, size));
+    }
+
+    /**
+     * View of the elements greater than (or equal to, if inclusive is true) fromKey. See
+     * {@link #subList(Object, boolean, Object, boolean)}.
+     *
+     * @param fromKey   low end point of the view
+     * @param inclusive true if the low end point is to be included in the view
+     * @return a view of the portion of this list whose elements are greater than fromKey.
+     */
+    public List<E> tailList(E fromKey, boolean inclusive) {
+        int size = super.size();
+        return super.subList(inclusive ? lowerBound(fromKey, 0, size) : upperBound(fromKey, 0, size), size);
+    }
+
+    /**
+     * Cast an object to the element type for a search.
+     *
+     * @param o the object
+     * @return the object as element, or null if it cannot be compared with the elements of this list.
+     */
+    @SuppressWarnings("unchecked")
+    private E asKey(Object o) {
+        if (o == null || super.isEmpty() || (comparator == null && !(o instanceof Comparable)))
+            return null;
+        try {
+            E key = (E) o;
+            // Comparing with an element detects the objects of another type.
+            internalCompare(key, super.get(0));
+            return key;
+        } catch (ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Binary search for the position of the first element that is greater than or equal to the given element.
+     *
+     * @param element element to search for
+     * @param from    first index of the range to search (inclusive)
+     * @param to      last index of the range to search (exclusive)
+     * @return index of the first element in the range that is not less than the element, "to" if there is none.
+     */
+    private int lowerBound(E element, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (internalCompare(element, super.get(mid)) <= 0)
+                to = mid;
+            else
+                from = mid + 1;
+        }
+        return from;
+    }
+
+    /**
+     * Binary search for the position after the last element that is less than or equal to the given element.
+     *
+     * @param element element to search for
+     * @param from    first index of the range to search (inclusive)
+     * @param to      last index of the range to search (exclusive)
+     * @return index of the first element in the range that is larger than the element, "to" if there is none.
+     */
+    private int upperBound(E element, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (internalCompare(element, super.get(mid)) < 0)
+                to = mid;
+            else
+                from = mid + 1;
+        }
+        return from;
     }
 
     @SuppressWarnings("unchecked")
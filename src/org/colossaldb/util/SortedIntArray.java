@@ -0,0 +1,281 @@
+package org.colossaldb.util;
+
+import java.util.Arrays;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * SortedIntArray keeps primitive int values sorted in a plain int[], without boxing them. It follows the semantics of
+ * {@link SortedArrayList}: single values are inserted at their position found with a binary search, and bulk inserts
+ * are sorted and then merged into the array in place.
+ * <p/>
+ * This data structure is NOT thread safe.
+ */
+public class SortedIntArray {
+    private static final int DEFAULT_CAPACITY = 10;
+
+    // Merge by binary searching the existing values, when the array is this many times larger than the new batch.
+    private static final int GALLOP_RATIO = 16;
+
+    private int[] elements;
+    private int size;
+
+    public SortedIntArray() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SortedIntArray(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+        this.elements = new int[initialCapacity];
+    }
+
+    public SortedIntArray(int[] values) {
+        this(values.length);
+        addAll(values);
+    }
+
+    /**
+     * Insert a single value at its sorted position. After the equal values, if any.
+     *
+     * @param value the value to add
+     */
+    public void add(int value) {
+        int index = upperBound(value, 0, size);
+        ensureCapacity(size + 1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+    }
+
+    /**
+     * Sort the values and then merge them with the existing ones, as {@link SortedArrayList#addAll}: appended when
+     * they all sort after the current last value, otherwise merged in place from the back.
+     *
+     * @param values values to add
+     * @return true if the array changed.
+     */
+    public boolean addAll(int[] values) {
+        if (values == null || values.length == 0)
+            return false;
+
+        int[] newElements = values.clone();
+        Arrays.sort(newElements);
+        ensureCapacity(size + newElements.length);
+
+        // Fast path: the whole batch goes after the current last value (this includes the empty array).
+        if (size == 0 || Integer.compare(newElements[0], elements[size - 1]) >= 0) {
+            System.arraycopy(newElements, 0, elements, size, newElements.length);
+            size += newElements.length;
+            return true;
+        }
+
+        // The values up to the insertion point of the smallest new value do not move.
+        int start = upperBound(newElements[0], 0, size);
+        int existing = size - 1;
+        int target = size + newElements.length - 1;
+        boolean gallop = (long) newElements.length * GALLOP_RATIO < size - start;
+        for (int next = newElements.length - 1; next >= 0; next--) {
+            int value = newElements[next];
+            // Move the block of existing values larger than this value to the back.
+            int stop;
+            if (gallop) {
+                stop = upperBound(value, start, existing + 1);
+            } else {
+                stop = existing + 1;
+                while (stop > start && Integer.compare(elements[stop - 1], value) > 0)
+                    stop--;
+            }
+            int length = existing + 1 - stop;
+            target -= length;
+            System.arraycopy(elements, stop, elements, target + 1, length);
+            existing = stop - 1;
+            elements[target--] = value;
+        }
+        size += newElements.length;
+        return true;
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        return elements[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * @param value value to search for
+     * @return the index of the first occurrence of the value, or -1 if it is not in the array.
+     */
+    public int indexOf(int value) {
+        int index = lowerBound(value, 0, size);
+        return index < size && Integer.compare(elements[index], value) == 0 ? index : -1;
+    }
+
+    /**
+     * @param value value to search for
+     * @return the index of the last occurrence of the value, or -1 if it is not in the array.
+     */
+    public int lastIndexOf(int value) {
+        int index = upperBound(value, 0, size) - 1;
+        return index >= 0 && Integer.compare(elements[index], value) == 0 ? index : -1;
+    }
+
+    /**
+     * @param value the value to match
+     * @return index of the first value greater than or equal to the given value, size() if there is none.
+     */
+    public int ceilingIndex(int value) {
+        return lowerBound(value, 0, size);
+    }
+
+    /**
+     * @param value the value to match
+     * @return index of the first value strictly greater than the given value, size() if there is none.
+     */
+    public int higherIndex(int value) {
+        return upperBound(value, 0, size);
+    }
+
+    /**
+     * Remove the first occurrence of the value.
+     *
+     * @param value value to remove
+     * @return true if the array contained the value.
+     */
+    public boolean remove(int value) {
+        int index = indexOf(value);
+        if (index < 0)
+            return false;
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Remove the value at the given position.
+     *
+     * @param index position of the value
+     * @return the removed value.
+     */
+    public int removeAt(int index) {
+        checkIndex(index);
+        int value = elements[index];
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return value;
+    }
+
+    /**
+     * @return copy of the values, in order.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            // Grow by half, as ArrayList does.
+            int newCapacity = Math.max(minCapacity, elements.length + (elements.length >> 1));
+            elements = Arrays.copyOf(elements, newCapacity);
+        }
+    }
+
+    public void trimToSize() {
+        if (size < elements.length)
+            elements = Arrays.copyOf(elements, size);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof SortedIntArray))
+            return false;
+
+        SortedIntArray other = (SortedIntArray) o;
+        if (size != other.size)
+            return false;
+        for (int i = 0; i < size; i++) {
+            if (Integer.compare(elements[i], other.elements[i]) != 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 1;
+        for (int i = 0; i < size; i++)
+            hashCode = 31 * hashCode + Integer.hashCode(elements[i]);
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                builder.append(", ");
+            builder.append(elements[i]);
+        }
+        return builder.append(']').toString();
+    }
+
+    // Index of the first value in [from, to) that is not less than the given value, "to" if there is none.
+    private int lowerBound(int value, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (Integer.compare(elements[mid], value) < 0)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    // Index of the first value in [from, to) that is greater than the given value, "to" if there is none.
+    private int upperBound(int value, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (Integer.compare(elements[mid], value) <= 0)
+                from = mid + 1;
+            else
+                to = mid;
+        }
+        return from;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
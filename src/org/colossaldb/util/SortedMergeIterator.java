@@ -0,0 +1,125 @@
+package org.colossaldb.util;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Lazy k-way merge of iterators that are already sorted.
+ * <p/>
+ * The current head of every source is kept in a binary min-heap, so every element costs O(log k) comparisons for k
+ * sources. Equal elements come out in the order of their sources (and the order within a source), so the merge is
+ * stable.
+ *
+ * @param <E> element type
+ */
+class SortedMergeIterator<E> implements Iterator<E> {
+    private final Comparator<? super E> comparator;
+    private final boolean checkOrder;
+
+    private final List<Iterator<? extends E>> sources;
+    private final Object[] heads;
+    // Heap of source indices ordered by their current head.
+    private final int[] heap;
+    private int heapSize;
+
+    /**
+     * @param comparator comparator the sources are sorted with, null for the natural order
+     * @param sources    sorted sources
+     * @param checkOrder true to verify that every source is sorted (IllegalArgumentException otherwise)
+     */
+    SortedMergeIterator(Comparator<? super E> comparator, List<? extends Iterator<? extends E>> sources, boolean checkOrder) {
+        if (sources == null)
+            throw new IllegalArgumentException("Sources cannot be null");
+        this.comparator = comparator;
+        this.checkOrder = checkOrder;
+        this.sources = new ArrayList<Iterator<? extends E>>(sources);
+        this.heads = new Object[this.sources.size()];
+        this.heap = new int[this.sources.size()];
+
+        for (int source = 0; source < this.sources.size(); source++) {
+            if (this.sources.get(source) == null)
+                throw new IllegalArgumentException("Source [" + source + "] is null");
+            if (this.sources.get(source).hasNext()) {
+                heads[source] = this.sources.get(source).next();
+                heap[heapSize++] = source;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--)
+            siftDown(i);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return heapSize > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E next() {
+        if (heapSize == 0)
+            throw new NoSuchElementException();
+
+        int source = heap[0];
+        E result = (E) heads[source];
+        if (sources.get(source).hasNext()) {
+            E head = sources.get(source).next();
+            if (checkOrder && compare(head, result) < 0)
+                throw new IllegalArgumentException("Source [" + source + "] is not sorted: [" + head + "] follows [" + result + "]");
+            heads[source] = head;
+        } else {
+            heads[source] = null;
+            heap[0] = heap[--heapSize];
+        }
+        siftDown(0);
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void siftDown(int position) {
+        int source = heap[position];
+        for (int child; (child = 2 * position + 1) < heapSize; position = child) {
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child]))
+                child++;
+            if (!less(heap[child], source))
+                break;
+            heap[position] = heap[child];
+        }
+        heap[position] = source;
+    }
+
+    // Order of the sources by their heads, ties broken by the source index.
+    @SuppressWarnings("unchecked")
+    private boolean less(int source1, int source2) {
+        int compareVal = compare((E) heads[source1], (E) heads[source2]);
+        return compareVal < 0 || (compareVal == 0 && source1 < source2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E element1, E element2) {
+        if (comparator != null)
+            return comparator.compare(element1, element2);
+        if (!(element1 instanceof Comparable))
+            throw new RuntimeException("Cannot cast [" + element1 + "] element to Comparable. The comparator must be set for the merge.");
+        return ((Comparable) element1).compareTo(element2);
+    }
+}
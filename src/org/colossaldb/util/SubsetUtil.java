@@ -0,0 +1,288 @@
+package org.colossaldb.util;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Subset enumeration on bit masks.
+ * <p/>
+ * Up to 64 elements a subset is a single long (bit i set when element i is in the subset), so stepping from one
+ * subset to the next is a handful of arithmetic instructions and nothing is allocated. Larger element counts use a
+ * single {@link BitSet} which is updated in place. The elements of a subset are only looked up when asked for,
+ * through {@link #elements(List, long)} and {@link #elements(List, BitSet)}.
+ */
+public class SubsetUtil {
+    // Largest element count for the long based enumerations.
+    public static final int MAX_MASK_SIZE = 64;
+
+    private SubsetUtil() {
+    }
+
+    /**
+     * Visit all the 2^N subsets of N elements, in increasing order of their mask.
+     *
+     * @param n       number of elements, at most 64
+     * @param visitor callback for each subset
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachSubset(int n, LongSubsetVisitor visitor) {
+        checkMaskSize(n, 0);
+        long last = lowBits(n);
+        // Plain counter. The loop condition is checked after the visit, so that 64 elements do not overflow.
+        for (long mask = 0; ; mask++) {
+            if (!visitor.visit(mask))
+                return false;
+            if (mask == last)
+                return true;
+        }
+    }
+
+    /**
+     * Visit the subsets of N elements with at least LO and at most HI elements, by increasing size and for the same
+     * size by increasing mask.
+     *
+     * @param n       number of elements, at most 64
+     * @param lo      smallest subset size
+     * @param hi      largest subset size
+     * @param visitor callback for each subset
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachSubset(int n, int lo, int hi, LongSubsetVisitor visitor) {
+        checkMaskSize(n, lo);
+        for (int k = lo; k <= Math.min(hi, n); k++) {
+            if (!forEachSubsetOfSize(n, k, visitor))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Visit the subsets of exactly K out of N elements, in increasing order of their mask (Gosper's hack).
+     *
+     * @param n       number of elements, at most 64
+     * @param k       subset size. More than N gives no subsets.
+     * @param visitor callback for each subset
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachSubsetOfSize(int n, int k, LongSubsetVisitor visitor) {
+        checkMaskSize(n, k);
+        if (k > n)
+            return true;
+
+        long mask = lowBits(k);
+        long last = k == 0 ? 0 : lowBits(k) << (n - k);
+        while (true) {
+            if (!visitor.visit(mask))
+                return false;
+            if (mask == last)
+                return true;
+            mask = nextSubsetOfSameSize(mask);
+        }
+    }
+
+    /**
+     * Next larger mask with the same number of bits set (Gosper's hack).
+     *
+     * @param mask a non zero mask, which is not the largest one with its number of bits
+     * @return the next mask.
+     */
+    public static long nextSubsetOfSameSize(long mask) {
+        long lowest = mask & -mask;
+        // Carry the lowest run of set bits one position up ...
+        long ripple = mask + lowest;
+        // ... and move the remaining bits of the run back to the bottom.
+        return ripple | (((ripple ^ mask) >>> 2) / lowest);
+    }
+
+    /**
+     * Visit all the subsets of N elements, for any N. The subsets are visited in the order of a binary counter.
+     *
+     * @param n       number of elements
+     * @param visitor callback for each subset
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachBitSetSubset(int n, BitSetSubsetVisitor visitor) {
+        IntCombinatoricUtil.checkSizes(n, 0);
+        BitSet subset = new BitSet(n);
+        while (true) {
+            if (!visitor.visit(subset))
+                return false;
+
+            // Increment: clear the trailing ones and set the next zero.
+            int zero = subset.nextClearBit(0);
+            if (zero >= n)
+                return true;
+            subset.clear(0, zero);
+            subset.set(zero);
+        }
+    }
+
+    /**
+     * Visit the subsets of exactly K out of N elements, for any N. The subsets are visited in revolving door order,
+     * so only two bits change from one subset to the next.
+     *
+     * @param n       number of elements
+     * @param k       subset size. More than N gives no subsets.
+     * @param visitor callback for each subset
+     * @return false if the visitor stopped the enumeration, true otherwise.
+     */
+    public static boolean forEachBitSetSubsetOfSize(int n, int k, final BitSetSubsetVisitor visitor) {
+        IntCombinatoricUtil.checkSizes(n, k);
+        final BitSet subset = new BitSet(n);
+        if (k == 0)
+            return visitor.visit(subset);
+
+        return IntCombinatoricUtil.forEachRevolvingDoorCombination(n, k, new IntSwapVisitor() {
+            @Override
+            public boolean visit(int[] indices, int removed, int added) {
+                if (removed < 0) {
+                    for (int index : indices)
+                        subset.set(index);
+                } else {
+                    subset.clear(removed);
+                    subset.set(added);
+                }
+                return visitor.visit(subset);
+            }
+        });
+    }
+
+    /**
+     * Lazy view of the elements in a subset. Nothing is copied: the view reads the items list.
+     *
+     * @param items the elements, element i being the one of bit i
+     * @param mask  the subset
+     * @return read only list of the selected items, in the order of the items list.
+     */
+    public static <T> List<T> elements(final List<T> items, final long mask) {
+        if (mask != 0 && 64 - Long.numberOfLeadingZeros(mask) > items.size())
+            throw new IllegalArgumentException("The subset refers to more than " + items.size() + " elements.");
+
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                if (index < 0 || index >= size())
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+                // Drop the lowest set bits until the wanted one is the lowest.
+                long bits = mask;
+                for (int i = 0; i < index; i++)
+                    bits &= bits - 1;
+                return items.get(Long.numberOfTrailingZeros(bits));
+            }
+
+            @Override
+            public int size() {
+                return Long.bitCount(mask);
+            }
+
+            @Override
+            public Iterator<T> iterator() {
+                return new Iterator<T>() {
+                    private long bits = mask;
+
+                    @Override
+                    public boolean hasNext() {
+                        return bits != 0;
+                    }
+
+                    @Override
+                    public T next() {
+                        if (bits == 0)
+                            throw new NoSuchElementException();
+                        T item = items.get(Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                        return item;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Subset views are read only.");
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Lazy view of the elements in a subset. Nothing is copied: the view reads the items list and the bit set, so it
+     * follows the changes of the bit set.
+     *
+     * @param items  the elements, element i being the one of bit i
+     * @param subset the subset
+     * @return read only list of the selected items, in the order of the items list.
+     */
+    public static <T> List<T> elements(final List<T> items, final BitSet subset) {
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                if (index < 0)
+                    throw new IndexOutOfBoundsException("Index: " + index);
+                int bit = subset.nextSetBit(0);
+                for (int i = 0; i < index && bit >= 0; i++)
+                    bit = subset.nextSetBit(bit + 1);
+                if (bit < 0)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+                return items.get(bit);
+            }
+
+            @Override
+            public int size() {
+                return subset.cardinality();
+            }
+
+            @Override
+            public Iterator<T> iterator() {
+                return new Iterator<T>() {
+                    private int bit = subset.nextSetBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return bit >= 0;
+                    }
+
+                    @Override
+                    public T next() {
+                        if (bit < 0)
+                            throw new NoSuchElementException();
+                        T item = items.get(bit);
+                        bit = subset.nextSetBit(bit + 1);
+                        return item;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Subset views are read only.");
+                    }
+                };
+            }
+        };
+    }
+
+    // Mask with the lowest n bits set, n between 0 and 64.
+    private static long lowBits(int n) {
+        return n == MAX_MASK_SIZE ? -1L : (1L << n) - 1;
+    }
+
+    private static void checkMaskSize(int n, int k) {
+        IntCombinatoricUtil.checkSizes(n, k);
+        if (n > MAX_MASK_SIZE)
+            throw new IllegalArgumentException("At most " + MAX_MASK_SIZE + " elements fit in a mask. Input: " + n
+                    + ". Use the BitSet based enumerations instead.");
+    }
+}
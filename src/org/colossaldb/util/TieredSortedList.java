@@ -0,0 +1,459 @@
+package org.colossaldb.util;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * TieredSortedList keeps its elements sorted, like {@link SortedArrayList}, but stores them in a sequence of small
+ * sorted blocks instead of one large array. Null elements are not permitted in the list.
+ * <p/>
+ * An insertion only shifts the elements of one block and the start offsets of the following blocks. The block size
+ * follows sqrt(n): the blocks are rebuilt with twice (or half) the size whenever the list grows (or shrinks) by a
+ * factor of four, so an insertion costs amortized O(sqrt(n)) instead of the O(n) shift of SortedArrayList.
+ * Positional access binary searches the block offsets and costs O(log n). Use it for large lists with a steady
+ * stream of single inserts; for lists that are built once and then read, SortedArrayList is faster.
+ * <p/>
+ * Insertion at a specified position and replacement of elements are not permitted, as they might break the order.
+ * This data structure is NOT thread safe.
+ *
+ * @param <E> - the parameter type.
+ */
+public class TieredSortedList<E> extends AbstractList<E> {
+    // Block size of a small list.
+    static final int MIN_BLOCK_SIZE = 64;
+
+    final Comparator<E> comparator;
+
+    private Object[][] blocks = new Object[4][];
+    private int[] blockSizes = new int[4];
+    // Index (in the list) of the first element of each block.
+    private int[] blockStarts = new int[4];
+    private int blockCount;
+    private int size;
+    // Capacity of every block, see blockSizeFor. A full block is split in two halves.
+    private int blockSize = MIN_BLOCK_SIZE;
+
+    public TieredSortedList() {
+        this((Comparator<E>) null);
+    }
+
+    public TieredSortedList(Comparator<E> comparator) {
+        this.comparator = comparator;
+    }
+
+    public TieredSortedList(Comparator<E> comparator, Collection<E> elements) {
+        this(comparator);
+        addAll(elements);
+    }
+
+    public TieredSortedList(Collection<E> elements) {
+        this(null, elements);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        int block = blockOf(index);
+        return (E) blocks[block][index - blockStarts[block]];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Insert the element at its sorted position, after the elements equal to it.
+     *
+     * @param element element to add
+     * @return true (the list always changes).
+     */
+    @Override
+    public boolean add(E element) {
+        if (element == null)
+            throw new NullPointerException("Null elements are not permitted.");
+
+        if (blockCount == 0) {
+            insertBlock(0, new Object[blockSize], 0);
+        }
+
+        // First block whose last element is larger than the element, or the last block.
+        int block = 0, right = blockCount - 1;
+        while (block < right) {
+            int mid = (block + right) >>> 1;
+            if (internalCompare(element, lastOf(mid)) < 0)
+                right = mid;
+            else
+                block = mid + 1;
+        }
+
+        if (blockSizes[block] == blockSize) {
+            splitBlock(block);
+            if (internalCompare(element, lastOf(block)) >= 0)
+                block++;
+        }
+
+        Object[] elements = blocks[block];
+        int count = blockSizes[block];
+        int position = upperBound(elements, count, element);
+        System.arraycopy(elements, position, elements, position + 1, count - position);
+        elements[position] = element;
+        blockSizes[block]++;
+        for (int b = block + 1; b < blockCount; b++)
+            blockStarts[b]++;
+        size++;
+        modCount++;
+        if (blockSizeFor(size) > blockSize)
+            rebuild(blockSize * 2);
+        return true;
+    }
+
+    /**
+     * Add all the elements. A large batch is sorted and merged with the existing elements into new blocks in one
+     * pass; a small one is inserted element by element.
+     *
+     * @param eCollection - the collection to be added.
+     * @return - returns "true" if the collection is changed.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean addAll(Collection<? extends E> eCollection) {
+        if (eCollection == null || eCollection.isEmpty())
+            return false;
+
+        // Inserting one by one costs about a block per element, rebuilding costs the whole list.
+        if ((long) eCollection.size() * blockSize < size) {
+            for (E element : eCollection)
+                add(element);
+            return true;
+        }
+
+        Object[] newElements = eCollection.toArray();
+        for (Object element : newElements) {
+            if (element == null)
+                throw new NullPointerException("Null elements are not permitted.");
+        }
+        if (comparator == null)
+            Arrays.sort(newElements);
+        else
+            Arrays.sort((E[]) newElements, comparator);
+
+        // Merge into completely filled blocks (existing elements first for equal ones).
+        Object[][] oldBlocks = blocks;
+        int[] oldSizes = blockSizes;
+        int oldBlockCount = blockCount;
+        int newSize = size + newElements.length;
+        clearBlocks();
+        blockSize = blockSizeFor(newSize);
+
+        int oldBlock = 0, oldPosition = 0, next = 0;
+        while (oldBlock < oldBlockCount || next < newElements.length) {
+            Object element;
+            if (oldBlock < oldBlockCount && (next == newElements.length
+                    || internalCompare((E) oldBlocks[oldBlock][oldPosition], (E) newElements[next]) <= 0)) {
+                element = oldBlocks[oldBlock][oldPosition];
+                if (++oldPosition == oldSizes[oldBlock]) {
+                    oldBlock++;
+                    oldPosition = 0;
+                }
+            } else {
+                element = newElements[next++];
+            }
+            append(element);
+        }
+        modCount++;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E remove(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+        int block = blockOf(index);
+        Object[] elements = blocks[block];
+        int position = index - blockStarts[block];
+        E removed = (E) elements[position];
+        int count = --blockSizes[block];
+        System.arraycopy(elements, position + 1, elements, position, count - position);
+        elements[count] = null;
+        for (int b = block + 1; b < blockCount; b++)
+            blockStarts[b]--;
+        if (count == 0)
+            removeBlock(block);
+        size--;
+        modCount++;
+
+        // Removals leave partly filled blocks behind, pack them again once there are too many.
+        if (blockSizeFor(size) < blockSize || blockCount > 4 * (size / blockSize + 1))
+            rebuild(blockSizeFor(size));
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Binary search for the first occurrence of the element. Elements that compare equal to it are checked with
+     * equals.
+     *
+     * @param o element to search for
+     * @return the index of the first occurrence of the element in this list, or -1 if it is not in the list.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public int indexOf(Object o) {
+        if (o == null || size == 0 || (comparator == null && !(o instanceof Comparable)))
+            return -1;
+
+        try {
+            E key = (E) o;
+            // First element not less than the key.
+            int left = 0, right = size;
+            while (left < right) {
+                int mid = (left + right) >>> 1;
+                if (internalCompare(key, get(mid)) <= 0)
+                    right = mid;
+                else
+                    left = mid + 1;
+            }
+            for (; left < size; left++) {
+                E element = get(left);
+                if (internalCompare(key, element) != 0)
+                    break;
+                if (o.equals(element))
+                    return left;
+            }
+            return -1;
+        } catch (ClassCastException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void clear() {
+        clearBlocks();
+        modCount++;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        throw new UnsupportedOperationException("Insertion at a specified position is not permitted as this operation might break" +
+                " the order of elements in the sorted list.");
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> eCollection) {
+        throw new UnsupportedOperationException("Insertion at a specified position is not permitted as this operation might break" +
+                " the order of elements in the sorted list.");
+    }
+
+    /**
+     * Iterate block by block, O(1) per element.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index;
+            private int block;
+            private int position;
+            private int lastReturned = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public E next() {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (index >= size)
+                    throw new NoSuchElementException();
+
+                E element = (E) blocks[block][position];
+                lastReturned = index++;
+                if (++position == blockSizes[block]) {
+                    block++;
+                    position = 0;
+                }
+                return element;
+            }
+
+            @Override
+            public void remove() {
+                if (lastReturned < 0)
+                    throw new IllegalStateException();
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+
+                TieredSortedList.this.remove(lastReturned);
+                index = lastReturned;
+                lastReturned = -1;
+                expectedModCount = modCount;
+                if (index < size) {
+                    block = blockOf(index);
+                    position = index - blockStarts[block];
+                }
+            }
+        };
+    }
+
+    // Block holding the element at the index (binary search on the start offsets).
+    private int blockOf(int index) {
+        int left = 0, right = blockCount - 1;
+        while (left < right) {
+            int mid = (left + right + 1) >>> 1;
+            if (blockStarts[mid] <= index)
+                left = mid;
+            else
+                right = mid - 1;
+        }
+        return left;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E lastOf(int block) {
+        return (E) blocks[block][blockSizes[block] - 1];
+    }
+
+    @SuppressWarnings("unchecked")
+    private int upperBound(Object[] elements, int count, E element) {
+        int left = 0, right = count;
+        while (left < right) {
+            int mid = (left + right) >>> 1;
+            if (internalCompare(element, (E) elements[mid]) < 0)
+                right = mid;
+            else
+                left = mid + 1;
+        }
+        return left;
+    }
+
+    /**
+     * Block size for a list of the given size: the power of two B, at least MIN_BLOCK_SIZE, with B * B <= size < 4 * B * B.
+     * Shifting inside a block and updating the offsets of the blocks after it then cost about the same.
+     */
+    static int blockSizeFor(int size) {
+        int blockSize = MIN_BLOCK_SIZE;
+        while (4L * blockSize * blockSize <= size)
+            blockSize *= 2;
+        return blockSize;
+    }
+
+    // Move the upper half of a full block into a new block after it.
+    private void splitBlock(int block) {
+        Object[] elements = blocks[block];
+        int half = blockSize / 2;
+        Object[] upper = new Object[blockSize];
+        System.arraycopy(elements, half, upper, 0, blockSize - half);
+        Arrays.fill(elements, half, blockSize, null);
+        blockSizes[block] = half;
+        insertBlock(block + 1, upper, blockStarts[block] + half);
+        blockSizes[block + 1] = blockSize - half;
+    }
+
+    // Copy the elements into completely filled blocks of the new size.
+    private void rebuild(int newBlockSize) {
+        Object[][] oldBlocks = blocks;
+        int[] oldSizes = blockSizes;
+        int oldBlockCount = blockCount;
+        clearBlocks();
+        blockSize = newBlockSize;
+        for (int b = 0; b < oldBlockCount; b++) {
+            for (int i = 0; i < oldSizes[b]; i++)
+                append(oldBlocks[b][i]);
+        }
+    }
+
+    // Add an element after the last one, starting a new block when the last one is full.
+    private void append(Object element) {
+        int last = blockCount - 1;
+        if (last < 0 || blockSizes[last] == blockSize) {
+            insertBlock(blockCount, new Object[blockSize], size);
+            last++;
+        }
+        blocks[last][blockSizes[last]++] = element;
+        size++;
+    }
+
+    private void insertBlock(int block, Object[] elements, int start) {
+        if (blockCount == blocks.length) {
+            int capacity = blockCount * 2;
+            blocks = Arrays.copyOf(blocks, capacity);
+            blockSizes = Arrays.copyOf(blockSizes, capacity);
+            blockStarts = Arrays.copyOf(blockStarts, capacity);
+        }
+        System.arraycopy(blocks, block, blocks, block + 1, blockCount - block);
+        System.arraycopy(blockSizes, block, blockSizes, block + 1, blockCount - block);
+        System.arraycopy(blockStarts, block, blockStarts, block + 1, blockCount - block);
+        blocks[block] = elements;
+        blockSizes[block] = 0;
+        blockStarts[block] = start;
+        blockCount++;
+    }
+
+    private void removeBlock(int block) {
+        blockCount--;
+        System.arraycopy(blocks, block + 1, blocks, block, blockCount - block);
+        System.arraycopy(blockSizes, block + 1, blockSizes, block, blockCount - block);
+        System.arraycopy(blockStarts, block + 1, blockStarts, block, blockCount - block);
+        blocks[blockCount] = null;
+    }
+
+    private void clearBlocks() {
+        blocks = new Object[4][];
+        blockSizes = new int[4];
+        blockStarts = new int[4];
+        blockCount = 0;
+        size = 0;
+        blockSize = MIN_BLOCK_SIZE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int internalCompare(E element1, E element2) {
+        int compareVal;
+        if (comparator == null) {
+            if (element1 instanceof Comparable) {
+                compareVal = ((Comparable) element1).compareTo(element2);
+            } else {
+                throw new RuntimeException("Cannot cast [" + element1 + "] element to Comparable. The comparator must be set in the constructor for TieredSortedList.");
+            }
+        } else {
+            compareVal = comparator.compare(element1, element2);
+        }
+        return compareVal;
+    }
+}
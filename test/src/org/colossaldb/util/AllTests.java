@@ -10,6 +10,9 @@ import org.junit.runners.Suite;
  * Time: 11:26 AM
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({CombinationsUtilTest.class, PermutationsUtilTest.class, FileUtilTest.class, SortedArrayListTest.class})
+@Suite.SuiteClasses({CombinationsUtilTest.class, PermutationsUtilTest.class, FileUtilTest.class, SortedArrayListTest.class,
+        IntCombinatoricUtilTest.class, SubsetUtilTest.class, SortedPrimitiveArrayTest.class,
+        TieredSortedListTest.class, ConcurrentSortedArrayListTest.class, MappedSortedKeyArrayTest.class,
+        FileTailerTest.class})
 public class AllTests {
 }
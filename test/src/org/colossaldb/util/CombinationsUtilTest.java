@@ -3,7 +3,10 @@ package org.colossaldb.util;
 import junit.framework.Assert;
 import org.junit.Test;
 
+import java.math.BigInteger;
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * Copyright (C) 2013  Jayaprakash Pasala
@@ -35,10 +38,82 @@ public class CombinationsUtilTest {
     public void testChooseRoutOfNForSize() {
         List<Integer> inputList = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9);
         int size = inputList.size();
-        int factorialOf9 = CombinatoricUtil.factorial(size);
         for (int i = 1; i <= size; i++) {
-            int expectedValue = factorialOf9 / (CombinatoricUtil.factorial(size - i) * CombinatoricUtil.factorial(i));
-            Assert.assertEquals(expectedValue, CombinatoricUtil.combinations(inputList, i).size());
+            Assert.assertEquals(CombinatoricUtil.binomial(size, i), CombinatoricUtil.combinations(inputList, i).size());
+        }
+    }
+
+    @Test
+    public void testChooseRoutOfNNegativeR() {
+        // A negative r selects the single elements.
+        List<Integer> inputList = Arrays.asList(1, 2, 3, 2);
+        Assert.assertEquals(CombinatoricUtil.combinations(inputList, 1), CombinatoricUtil.combinations(inputList, -1));
+        Assert.assertEquals(3, CombinatoricUtil.combinations(inputList, -2).size());
+        Assert.assertEquals(CombinatoricUtil.permutations(inputList, 1), CombinatoricUtil.permutations(inputList, -1));
+    }
+
+    @Test
+    public void testBinomial() {
+        // Compare the table and the multiplicative evaluation against BigInteger arithmetic.
+        for (int n = 0; n <= 100; n++) {
+            BigInteger expected = BigInteger.ONE;
+            for (int r = 0; r <= n; r++) {
+                if (r > 0)
+                    expected = expected.multiply(BigInteger.valueOf(n - r + 1)).divide(BigInteger.valueOf(r));
+                Assert.assertEquals(expected, CombinatoricUtil.binomialBig(n, r));
+                if (expected.bitLength() < 64) {
+                    Assert.assertEquals(expected.longValue(), CombinatoricUtil.binomial(n, r));
+                } else {
+                    try {
+                        CombinatoricUtil.binomial(n, r);
+                        Assert.fail("Overflow not detected for " + n + " choose " + r);
+                    } catch (ArithmeticException e) {
+                        // Expected
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(0, CombinatoricUtil.binomial(3, 4));
+        Assert.assertEquals(499999500000L, CombinatoricUtil.binomial(1000000, 2));
+        Assert.assertEquals(832500291625002000L, CombinatoricUtil.binomial(10000, 5));
+    }
+
+    @Test
+    public void testFactorialAndPermutationCount() {
+        Assert.assertEquals(479001600, CombinatoricUtil.factorial(12));
+        Assert.assertEquals(2432902008176640000L, CombinatoricUtil.factorialLong(20));
+        Assert.assertEquals(new BigInteger("51090942171709440000"), CombinatoricUtil.factorialBig(21));
+        try {
+            CombinatoricUtil.factorial(13);
+            Assert.fail("13! does not fit in an int");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+        try {
+            CombinatoricUtil.factorialLong(21);
+            Assert.fail("21! does not fit in a long");
+        } catch (ArithmeticException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(720, CombinatoricUtil.permutationCount(10, 3));
+        Assert.assertEquals(0, CombinatoricUtil.permutationCount(3, 4));
+        Assert.assertEquals(CombinatoricUtil.factorialBig(30).divide(CombinatoricUtil.factorialBig(10)),
+                CombinatoricUtil.permutationCountBig(30, 20));
+    }
+
+    @Test
+    public void testMultinomial() {
+        // "aaaabbbbcc" has 10! / (4! 4! 2!) distinct orderings.
+        Assert.assertEquals(3150, CombinatoricUtil.multinomial(4, 4, 2));
+        Assert.assertEquals(1, CombinatoricUtil.multinomial());
+        Assert.assertEquals(CombinatoricUtil.factorialBig(40).divide(CombinatoricUtil.factorialBig(10).pow(4)),
+                CombinatoricUtil.multinomialBig(10, 10, 10, 10));
+        try {
+            CombinatoricUtil.multinomial(10, 10, 10, 10);
+            Assert.fail("Overflow not detected");
+        } catch (ArithmeticException e) {
+            // Expected
         }
     }
 
@@ -82,6 +157,295 @@ public class CombinationsUtilTest {
         }
     }
 
+    @Test
+    public void testCombinationsIteratorMatchesCombinations() {
+        Collection<Integer> input = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        for (int i = 1; i <= 10; i++) {
+            Assert.assertEquals(CombinatoricUtil.combinations(input, i), collectSorted(CombinatoricUtil.combinationsIterator(input, i)));
+        }
+
+        // Duplicates are not collapsed by the iterator, but the distinct results must be the same.
+        Collection<Character> redBlack = Arrays.asList('r', 'r', 'b', 'b', 'b');
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertEquals(CombinatoricUtil.combinations(redBlack, i), collectSorted(CombinatoricUtil.combinationsIterator(redBlack, i)));
+        }
+    }
+
+    @Test
+    public void testCombinationsIteratorOrder() {
+        Iterator<List<Character>> iterator = CombinatoricUtil.combinationsIterator(Arrays.asList('a', 'b', 'c', 'd'), 2);
+        List<List<Character>> actual = new ArrayList<List<Character>>();
+        while (iterator.hasNext())
+            actual.add(iterator.next());
+
+        Assert.assertEquals(Arrays.asList(Arrays.asList('a', 'b'), Arrays.asList('a', 'c'), Arrays.asList('a', 'd'),
+                Arrays.asList('b', 'c'), Arrays.asList('b', 'd'), Arrays.asList('c', 'd')), actual);
+    }
+
+    @Test
+    public void testCombinationsIteratorEdgeCases() {
+        Collection<Integer> input = Arrays.asList(1, 2, 3);
+        Assert.assertFalse(CombinatoricUtil.combinationsIterator(input, 0).hasNext());
+        Assert.assertFalse(CombinatoricUtil.combinationsIterator(input, 4).hasNext());
+        Assert.assertEquals(1, CombinatoricUtil.combinationsStream(input, 3).count());
+        try {
+            CombinatoricUtil.combinationsIterator(input, -1);
+            Assert.fail("Negative r must not be accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCombinationsStreamCount() {
+        List<Integer> input = new ArrayList<Integer>();
+        for (int i = 0; i < 20; i++)
+            input.add(i);
+        // 20 choose 6
+        Assert.assertEquals(38760, CombinatoricUtil.combinationsStream(input, 6).count());
+    }
+
+    @Test
+    public void testRankAndUnrankCombination() {
+        final int n = 9;
+        for (int r = 1; r <= n; r++) {
+            final int currR = r;
+            final long[] expectedRank = new long[1];
+            IntCombinatoricUtil.forEachCombination(n, r, new IntCombinationVisitor() {
+                @Override
+                public boolean visit(int[] indices) {
+                    Assert.assertEquals(expectedRank[0], CombinatoricUtil.rankCombination(indices, n));
+                    Assert.assertTrue(Arrays.equals(indices, CombinatoricUtil.unrankCombination(expectedRank[0], n, currR)));
+                    expectedRank[0]++;
+                    return true;
+                }
+            });
+        }
+
+        // Random access far into a large enumeration: the last of 60 choose 30.
+        int[] last = CombinatoricUtil.unrankCombination(118264581564861424L - 1, 60, 30);
+        Assert.assertEquals(30, last[0]);
+        Assert.assertEquals(59, last[29]);
+    }
+
+    @Test
+    public void testRankCombinationInvalidInput() {
+        try {
+            CombinatoricUtil.rankCombination(new int[]{2, 1}, 5);
+            Assert.fail("Decreasing indices are not a combination");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            CombinatoricUtil.unrankCombination(10, 5, 2);
+            Assert.fail("5 choose 2 has only 10 combinations");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testParallelCombinationsStream() {
+        List<Integer> input = new ArrayList<Integer>();
+        for (int i = 0; i < 16; i++)
+            input.add(i);
+
+        List<List<Integer>> sequential = CombinatoricUtil.combinationsStream(input, 5).collect(Collectors.<List<Integer>>toList());
+        List<List<Integer>> parallel = CombinatoricUtil.combinationsStream(input, 5).parallel().collect(Collectors.<List<Integer>>toList());
+        Assert.assertEquals(4368, sequential.size());
+        // Encounter order is kept by the parallel stream.
+        Assert.assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testHugeCombinationsStreamIsLazy() {
+        List<Integer> input = new ArrayList<Integer>();
+        for (int i = 0; i < 70; i++)
+            input.add(i);
+
+        // 70 choose 35 does not fit in a long, the stream still hands out the first few combinations.
+        List<List<Integer>> first = CombinatoricUtil.combinationsStream(input, 35).limit(3).collect(Collectors.<List<Integer>>toList());
+        Assert.assertEquals(3, first.size());
+        Assert.assertEquals(input.subList(0, 35), first.get(0));
+        List<Integer> expected = new ArrayList<Integer>(input.subList(0, 34));
+        expected.add(35);
+        Assert.assertEquals(expected, first.get(1));
+    }
+
+    @Test
+    public void testCombinationsSpliteratorSplit() {
+        List<Integer> input = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8);
+        Spliterator<List<Integer>> second = CombinatoricUtil.combinationsSpliterator(input, 4);
+        Spliterator<List<Integer>> first = second.trySplit();
+        // 9 choose 4 = 126, split evenly.
+        Assert.assertEquals(63, first.estimateSize());
+        Assert.assertEquals(63, second.estimateSize());
+
+        final List<List<Integer>> all = new ArrayList<List<Integer>>();
+        java.util.function.Consumer<List<Integer>> collector = new java.util.function.Consumer<List<Integer>>() {
+            @Override
+            public void accept(List<Integer> combination) {
+                all.add(combination);
+            }
+        };
+        // Advance the first part once before splitting it again, the rest is collected in bulk.
+        first.tryAdvance(collector);
+        Spliterator<List<Integer>> firstQuarter = first.trySplit();
+        firstQuarter.forEachRemaining(collector);
+        first.forEachRemaining(collector);
+        second.forEachRemaining(collector);
+
+        List<List<Integer>> expected = new ArrayList<List<Integer>>();
+        Iterator<List<Integer>> iterator = CombinatoricUtil.combinationsIterator(input, 4);
+        while (iterator.hasNext())
+            expected.add(iterator.next());
+        Assert.assertEquals(expected, all);
+    }
+
+    @Test
+    public void testParallelFilterSpeed() {
+        List<Integer> input = new ArrayList<Integer>();
+        for (int i = 1; i <= 40; i++)
+            input.add(i);
+        Predicate<List<Integer>> filter = new Predicate<List<Integer>>() {
+            @Override
+            public boolean test(List<Integer> combination) {
+                int sum = 0;
+                for (Integer i : combination)
+                    sum += i;
+                return sum % 7 == 0;
+            }
+        };
+
+        // 40 choose 6 = 3838380 combinations
+        long startTime = System.nanoTime();
+        long sequential = CombinatoricUtil.combinationsStream(input, 6).filter(filter).count();
+        long endTime = System.nanoTime();
+        System.out.println("Time taken to filter 40 choose 6 sequentially: [" + (endTime - startTime) / 1000000L + "ms]");
+        startTime = System.nanoTime();
+        long parallel = CombinatoricUtil.combinationsStream(input, 6).parallel().filter(filter).count();
+        endTime = System.nanoTime();
+        System.out.println("Time taken to filter 40 choose 6 in parallel: [" + (endTime - startTime) / 1000000L + "ms]");
+
+        Assert.assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testMultisetCombinations() {
+        List<Character> input = asCharacters("aaaabbbbcc");
+        for (int r = 1; r <= input.size(); r++) {
+            Iterator<List<Character>> iterator = CombinatoricUtil.multisetCombinationsIterator(input, r);
+            Set<Collection<Character>> actual = new HashSet<Collection<Character>>();
+            int count = 0;
+            while (iterator.hasNext()) {
+                actual.add(new SortedArrayList<Character>(iterator.next()));
+                count++;
+            }
+            Assert.assertEquals("Duplicate combinations for r = " + r, actual.size(), count);
+            Assert.assertEquals(collectSorted(CombinatoricUtil.combinationsIterator(input, r)), actual);
+            Assert.assertEquals(CombinatoricUtil.combinations(input, r), actual);
+        }
+    }
+
+    @Test
+    public void testMultisetCombinationsOrder() {
+        Map<Character, Integer> counts = new LinkedHashMap<Character, Integer>();
+        counts.put('a', 2);
+        counts.put('b', 1);
+        counts.put('c', 2);
+        Iterator<List<Character>> iterator = CombinatoricUtil.multisetCombinationsIterator(counts, 2);
+        List<List<Character>> actual = new ArrayList<List<Character>>();
+        while (iterator.hasNext())
+            actual.add(iterator.next());
+        Assert.assertEquals(Arrays.asList(asCharacters("aa"), asCharacters("ab"), asCharacters("ac"), asCharacters("bc"),
+                asCharacters("cc")), actual);
+    }
+
+    @Test
+    public void testFindCombinationsWithBound() {
+        List<Integer> weights = new ArrayList<Integer>();
+        for (int i = 1; i <= 20; i++)
+            weights.add(i);
+        final int maxSum = 30;
+        final int[] filterCalls = new int[1];
+        Predicate<List<Integer>> sumAtMost = new Predicate<List<Integer>>() {
+            @Override
+            public boolean test(List<Integer> prefix) {
+                filterCalls[0]++;
+                int sum = 0;
+                for (Integer weight : prefix)
+                    sum += weight;
+                return sum <= maxSum;
+            }
+        };
+
+        List<List<Integer>> expected = new ArrayList<List<Integer>>();
+        Iterator<List<Integer>> iterator = CombinatoricUtil.combinationsIterator(weights, 5);
+        while (iterator.hasNext()) {
+            List<Integer> combination = iterator.next();
+            if (sumAtMost.test(combination))
+                expected.add(combination);
+        }
+
+        // The pruned search looks at fewer prefixes than there are combinations (20 choose 5 = 15504).
+        filterCalls[0] = 0;
+        Assert.assertEquals(expected, CombinatoricUtil.findCombinations(weights, 5, sumAtMost, Integer.MAX_VALUE));
+        int prunedCalls = filterCalls[0];
+        Assert.assertTrue("Filter calls: " + prunedCalls, prunedCalls < CombinatoricUtil.binomial(20, 5));
+
+        // The weights are sorted, so the sum is a monotone bound and the rejected siblings are not even checked.
+        filterCalls[0] = 0;
+        Assert.assertEquals(expected, CombinatoricUtil.findCombinations(weights, 5, sumAtMost, true, Integer.MAX_VALUE));
+        Assert.assertTrue("Filter calls: " + filterCalls[0], filterCalls[0] < prunedCalls / 2);
+
+        // Stop after the first 3 matches.
+        Assert.assertEquals(expected.subList(0, 3), CombinatoricUtil.findCombinations(weights, 5, sumAtMost, 3));
+        Assert.assertTrue(CombinatoricUtil.findCombinations(weights, 5, sumAtMost, 0).isEmpty());
+    }
+
+    @Test
+    public void testPrefixFilterSeesEveryPrefixLength() {
+        final List<Integer> lengths = new ArrayList<Integer>();
+        IntCombinatoricUtil.forEachCombination(4, 3, new IntPrefixFilter() {
+            @Override
+            public boolean accept(int[] prefix, int length) {
+                lengths.add(length);
+                // Only prefixes starting with element 1 are of interest.
+                return prefix[0] == 1;
+            }
+        }, new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                Assert.assertTrue(Arrays.equals(new int[]{1, 2, 3}, indices));
+                return true;
+            }
+        });
+        // [0] rejected, [1], [1, 2], [1, 2, 3] accepted, [1, 3] cannot be completed, no room left for [2].
+        Assert.assertEquals(Arrays.asList(1, 1, 2, 3), lengths);
+    }
+
+    private static List<Character> asCharacters(String str) {
+        List<Character> characters = new ArrayList<Character>();
+        for (char c : str.toCharArray())
+            characters.add(c);
+        return characters;
+    }
+
+    /**
+     * Helper method to collect the combinations into a set of sorted lists, so that they can be compared against the
+     * output of CombinatoricUtil.combinations.
+     *
+     * @param iterator - iterator over the combinations
+     * @param <E>      - element type
+     * @return - set of the combinations.
+     */
+    private static <E> Set<Collection<E>> collectSorted(Iterator<List<E>> iterator) {
+        Set<Collection<E>> all = new HashSet<Collection<E>>();
+        while (iterator.hasNext())
+            all.add(new SortedArrayList<E>(iterator.next()));
+        return all;
+    }
+
     @Test
     public void testSpeed() {
         List<Set<Collection<Integer>>> testResults = new ArrayList<Set<Collection<Integer>>>();
@@ -0,0 +1,299 @@
+package org.colossaldb.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Test class for ConcurrentSortedArrayList.
+ */
+public class ConcurrentSortedArrayListTest {
+
+    @Test
+    public void testSingleThreaded() {
+        ConcurrentSortedArrayList<Integer> list = new ConcurrentSortedArrayList<Integer>(Arrays.asList(-10, 5, 4, 3, 7, 3));
+        Assert.assertEquals(Arrays.asList(-10, 3, 3, 4, 5, 7), list);
+        list.add(6);
+        list.addAll(Arrays.asList(-44, 8, 3));
+        Assert.assertEquals(Arrays.asList(-44, -10, 3, 3, 3, 4, 5, 6, 7, 8), list);
+        Assert.assertEquals(Arrays.asList(-44, -10, 3, 3, 3, 4, 5, 6, 7, 8).hashCode(), list.hashCode());
+        Assert.assertEquals(Arrays.asList(3, 3, 3), list.subList(2, 5));
+        Assert.assertEquals(10, list.stream().count());
+        Assert.assertTrue(list.contains(6));
+        Assert.assertFalse(list.contains(2));
+        Assert.assertFalse(list.contains("6"));
+        Assert.assertEquals(2, list.indexOf(3));
+        Assert.assertTrue(list.remove((Object) 3));
+        Assert.assertEquals(Integer.valueOf(-44), list.remove(0));
+        Assert.assertEquals(Arrays.asList(-10, 3, 3, 4, 5, 6, 7, 8), list);
+
+        List<Integer> snapshot = list.snapshot();
+        list.clear();
+        Assert.assertTrue(list.isEmpty());
+        Assert.assertEquals(8, snapshot.size());
+
+        try {
+            list.add(0, 1);
+            Assert.fail("Insertion at a position must not be permitted");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            list.add(null);
+            Assert.fail("Null elements must not be permitted");
+        } catch (NullPointerException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testBulkRemoves() {
+        ConcurrentSortedArrayList<Integer> list = new ConcurrentSortedArrayList<Integer>(Arrays.asList(5, 1, 4, 2, 3, 2, 6));
+        Assert.assertTrue(list.removeAll(Arrays.asList(2, 6, 9)));
+        Assert.assertEquals(Arrays.asList(1, 3, 4, 5), list);
+        Assert.assertFalse(list.removeAll(Arrays.asList(7)));
+        Assert.assertTrue(list.retainAll(Arrays.asList(3, 4, 5, 8)));
+        Assert.assertEquals(Arrays.asList(3, 4, 5), list);
+        Assert.assertTrue(list.removeIf(new Predicate<Integer>() {
+            @Override
+            public boolean test(Integer value) {
+                return value % 2 == 1;
+            }
+        }));
+        Assert.assertEquals(Arrays.asList(4), list);
+        list.add(1);
+        Assert.assertEquals(Arrays.asList(1, 4), list);
+    }
+
+    @Test
+    public void testComparator() {
+        ConcurrentSortedArrayList<String> list = new ConcurrentSortedArrayList<String>(String.CASE_INSENSITIVE_ORDER);
+        list.addAll(Arrays.asList("b", "C", "a", "B"));
+        // Equal elements keep the insertion order.
+        Assert.assertEquals(Arrays.asList("a", "b", "B", "C"), list);
+        Assert.assertEquals(2, list.indexOf("B"));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testElementThatCanNotBeCompared() {
+        ConcurrentSortedArrayList<Object> list = new ConcurrentSortedArrayList<Object>(Arrays.<Object>asList(2, 1));
+        try {
+            list.add("x");
+            Assert.fail("A String can not be compared with the Integer elements");
+        } catch (ClassCastException e) {
+            // Expected
+        }
+        try {
+            list.addAll(Arrays.<Object>asList(3, new Object()));
+            Assert.fail("An Object is not Comparable");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+
+        // Nothing was queued, the list keeps working.
+        list.add(3);
+        Assert.assertEquals(Arrays.<Object>asList(1, 2, 3), list);
+
+        // A failure inside the merge only rejects the element that caused it.
+        final boolean[] failing = {true};
+        final Comparator<Integer> picky = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                if (failing[0] && (o1 == 13 && o2 == 5 || o1 == 5 && o2 == 13))
+                    throw new IllegalStateException("13 and 5 do not compare");
+                return o1.compareTo(o2);
+            }
+        };
+        ConcurrentSortedArrayList<Integer> picked = new ConcurrentSortedArrayList<Integer>(picky, Arrays.asList(1, 5));
+        try {
+            picked.add(13);
+            Assert.fail("The merge compares 13 with 5");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        Assert.assertEquals(Arrays.asList(1, 5), picked);
+        picked.add(7);
+        Assert.assertEquals(Arrays.asList(1, 5, 7), picked);
+        failing[0] = false;
+        picked.add(13);
+        Assert.assertEquals(Arrays.asList(1, 5, 7, 13), picked);
+    }
+
+    @Test
+    public void testIncomparableElementsMergedTogether() throws InterruptedException {
+        // The writers queue an Integer and a String while a remove holds the write lock, so both are merged in one
+        // batch. Each compares fine with the anchor, not with each other.
+        final Object anchor = new Object();
+        final Thread[] holder = new Thread[1];
+        final CountDownLatch release = new CountDownLatch(1);
+        Comparator<Object> comparator = new Comparator<Object>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public int compare(Object o1, Object o2) {
+                if (o1 == anchor || o2 == anchor) {
+                    if (Thread.currentThread() == holder[0]) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return o1 == o2 ? 0 : o1 == anchor ? -1 : 1;
+                }
+                return ((Comparable<Object>) o1).compareTo(o2);
+            }
+        };
+        final ConcurrentSortedArrayList<Object> list = new ConcurrentSortedArrayList<Object>(comparator);
+        list.add(anchor);
+
+        holder[0] = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                list.remove(Integer.valueOf(42));
+            }
+        });
+        final List<Object> added = Collections.synchronizedList(new ArrayList<Object>());
+        final List<RuntimeException> failures = Collections.synchronizedList(new ArrayList<RuntimeException>());
+        List<Thread> writers = new ArrayList<Thread>();
+        for (final Object element : Arrays.<Object>asList(1, "x")) {
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        list.add(element);
+                        added.add(element);
+                    } catch (RuntimeException e) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+
+        holder[0].start();
+        while (holder[0].getState() != Thread.State.WAITING)
+            Thread.sleep(1);
+        for (Thread writer : writers)
+            writer.start();
+        for (Thread writer : writers) {
+            while (writer.getState() != Thread.State.WAITING)
+                Thread.sleep(1);
+        }
+        release.countDown();
+        holder[0].join();
+        for (Thread writer : writers)
+            writer.join();
+
+        // One of them got in, the other one failed in its own add.
+        Assert.assertEquals(1, added.size());
+        Assert.assertEquals(1, failures.size());
+        Assert.assertTrue(failures.get(0) instanceof ClassCastException);
+        Assert.assertEquals(Arrays.asList(anchor, added.get(0)), list);
+
+        // The list still takes adds and removes.
+        Object more = added.get(0) instanceof Integer ? (Object) 2 : "y";
+        list.add(more);
+        Assert.assertEquals(Arrays.asList(anchor, added.get(0), more), list);
+        Assert.assertTrue(list.remove(more));
+    }
+
+    @Test
+    public void testConcurrentWritersAndReaders() throws InterruptedException {
+        final int writers = 4;
+        final int perWriter = 5000;
+        final ConcurrentSortedArrayList<Integer> list = new ConcurrentSortedArrayList<Integer>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int w = 0; w < writers; w++) {
+            final int seed = w;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random r = new Random(seed);
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < perWriter; i++) {
+                        Integer value = r.nextInt(100000);
+                        list.add(value);
+                        if (!list.contains(value))
+                            failure.set("Added element not visible: " + value);
+                    }
+                }
+            }));
+        }
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!Thread.currentThread().isInterrupted()) {
+                    List<Integer> snapshot = list.snapshot();
+                    for (int i = 1; i < snapshot.size(); i++) {
+                        if (snapshot.get(i - 1) > snapshot.get(i))
+                            failure.set("Snapshot is not sorted at " + i);
+                    }
+
+                    // The views read a snapshot too, and must not fail while the writers run.
+                    try {
+                        long count = list.stream().count();
+                        int half = list.subList(0, (int) count / 2).size();
+                        ListIterator<Integer> iterator = list.listIterator();
+                        while (iterator.hasNext())
+                            iterator.next();
+                        if (half != count / 2)
+                            failure.set("Inconsistent views of " + count + " elements");
+                        list.equals(snapshot);
+                        list.hashCode();
+                    } catch (RuntimeException e) {
+                        failure.set("Reading a view failed: " + e);
+                    }
+                }
+            }
+        });
+
+        long startTime = System.currentTimeMillis();
+        for (Thread thread : threads)
+            thread.start();
+        reader.start();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        reader.interrupt();
+        reader.join();
+        System.out.println("Time taken for concurrent adds: [" + (System.currentTimeMillis() - startTime) + "ms]");
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(writers * perWriter, list.size());
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int w = 0; w < writers; w++) {
+            Random r = new Random(w);
+            for (int i = 0; i < perWriter; i++)
+                expected.add(r.nextInt(100000));
+        }
+        Collections.sort(expected);
+        Assert.assertEquals(expected, list);
+    }
+}
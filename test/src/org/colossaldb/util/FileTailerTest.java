@@ -0,0 +1,216 @@
+package org.colossaldb.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Test class for FileTailer.
+ */
+public class FileTailerTest {
+
+    private static Path tempDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("tailer");
+        directory.toFile().deleteOnExit();
+        return directory;
+    }
+
+    private static void append(Path path, String str) throws IOException {
+        Files.write(path, str.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        for (Path path : Files.newDirectoryStream(directory))
+            Files.delete(path);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testIncrementalLines() throws IOException {
+        Path directory = tempDirectory();
+        Path path = directory.resolve("app.log");
+        FileTailer tailer = new FileTailer(path);
+        try {
+            // The file does not exist yet.
+            Assert.assertEquals(Collections.emptyList(), tailer.poll());
+
+            append(path, "one\ntwo\r\nthr");
+            Assert.assertEquals(Arrays.asList("one", "two"), tailer.poll());
+            Assert.assertEquals(Collections.emptyList(), tailer.poll());
+            append(path, "ee \u00e9");
+            Assert.assertEquals(Collections.emptyList(), tailer.poll());
+            append(path, "\r");
+            Assert.assertEquals(Collections.emptyList(), tailer.poll());
+            append(path, "\n\nfour\n");
+            Assert.assertEquals(Arrays.asList("three \u00e9", "", "four"), tailer.poll());
+            Assert.assertEquals(Files.size(path), tailer.getOffset());
+        } finally {
+            tailer.close();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testMultiByteCharacterAcrossPolls() throws IOException {
+        Path directory = tempDirectory();
+        Path path = directory.resolve("app.log");
+        byte[] bytes = "x\u4e2dy\n".getBytes(StandardCharsets.UTF_8);
+        FileTailer tailer = new FileTailer(path);
+        try {
+            Files.write(path, Arrays.copyOf(bytes, 2));
+            Assert.assertEquals(Collections.emptyList(), tailer.poll());
+            Files.write(path, Arrays.copyOfRange(bytes, 2, bytes.length), StandardOpenOption.APPEND);
+            Assert.assertEquals(Arrays.asList("x\u4e2dy"), tailer.poll());
+        } finally {
+            tailer.close();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testTruncation() throws IOException {
+        Path directory = tempDirectory();
+        Path path = directory.resolve("app.log");
+        append(path, "old line 1\nold line 2\npartial");
+        FileTailer tailer = new FileTailer(path);
+        try {
+            Assert.assertEquals(Arrays.asList("old line 1", "old line 2"), tailer.poll());
+            Files.write(path, "new\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+            Assert.assertEquals(Arrays.asList("new"), tailer.poll());
+        } finally {
+            tailer.close();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testCopyTruncate() throws IOException {
+        Path directory = tempDirectory();
+        Path path = directory.resolve("app.log");
+        append(path, "old line 1\nold line 2\n");
+        FileTailer tailer = new FileTailer(path);
+        try {
+            Assert.assertEquals(Arrays.asList("old line 1", "old line 2"), tailer.poll());
+            // Copied away and truncated, then written past the old offset before the next poll.
+            Files.write(path, "a new line that is longer than the old contents\n".getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            Assert.assertEquals(Arrays.asList("a new line that is longer than the old contents"), tailer.poll());
+            append(path, "next\n");
+            Assert.assertEquals(Arrays.asList("next"), tailer.poll());
+        } finally {
+            tailer.close();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testRotation() throws IOException {
+        Path directory = tempDirectory();
+        Path path = directory.resolve("app.log");
+        append(path, "a\nb");
+        FileTailer tailer = new FileTailer(path);
+        try {
+            Assert.assertEquals(Arrays.asList("a"), tailer.poll());
+            append(path, "c\nlast");
+            Files.move(path, directory.resolve("app.log.1"));
+            append(path, "new 1\nnew 2\n");
+            Assert.assertEquals(Arrays.asList("bc", "last", "new 1", "new 2"), tailer.poll());
+            append(path, "new 3\n");
+            Assert.assertEquals(Arrays.asList("new 3"), tailer.poll());
+        } finally {
+            tailer.close();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testFromEnd() throws IOException {
+        Path directory = tempDirectory();
+        Path path = directory.resolve("app.log");
+        append(path, "existing\n");
+        FileTailer tailer = new FileTailer(path, StandardCharsets.UTF_8, true);
+        try {
+            Assert.assertEquals(Collections.emptyList(), tailer.poll());
+            append(path, "added\n");
+            Assert.assertEquals(Arrays.asList("added"), tailer.poll());
+        } finally {
+            tailer.close();
+        }
+
+        // Only the contents at construction are skipped, not the lines added before the first poll.
+        tailer = new FileTailer(path, StandardCharsets.UTF_8, true);
+        try {
+            append(path, "before the first poll\n");
+            Assert.assertEquals(Arrays.asList("before the first poll"), tailer.poll());
+        } finally {
+            tailer.close();
+        }
+
+        // A file created after the construction is read from its beginning.
+        Path created = directory.resolve("created.log");
+        tailer = new FileTailer(created, StandardCharsets.UTF_8, true);
+        try {
+            Assert.assertEquals(Collections.emptyList(), tailer.poll());
+            append(created, "first\n");
+            Assert.assertEquals(Arrays.asList("first"), tailer.poll());
+        } finally {
+            tailer.close();
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testAwait() throws IOException, InterruptedException {
+        Path directory = tempDirectory();
+        final Path path = directory.resolve("app.log");
+        append(path, "first\n");
+        FileTailer tailer = new FileTailer(path);
+        try {
+            Assert.assertEquals(Arrays.asList("first"), tailer.poll());
+            Assert.assertFalse(tailer.await(50, TimeUnit.MILLISECONDS));
+
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(100);
+                        append(path, "second\n");
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            writer.start();
+            Assert.assertTrue(tailer.await(10, TimeUnit.SECONDS));
+            writer.join();
+            Assert.assertEquals(Arrays.asList("second"), tailer.poll());
+        } finally {
+            tailer.close();
+            delete(directory);
+        }
+    }
+}
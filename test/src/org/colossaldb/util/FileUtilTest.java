@@ -3,10 +3,35 @@ package org.colossaldb.util;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Copyright (C) 2013  Jayaprakash Pasala
@@ -70,4 +95,569 @@ public class FileUtilTest {
         Assert.assertEquals(Arrays.asList(""), // Remember that this method will not retain the new lines.
                 FileUtil.getFileAsStrings(new StringReader(newLineStr)));
     }
+
+    private static Path tempFile(byte[] contents) throws IOException {
+        Path path = Files.createTempFile("fileutil", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, contents);
+        return path;
+    }
+
+    @Test
+    public void pathTest() throws IOException {
+        String str = "line one\r\nline two\rline three\n\nline five\u00e9\u4e2d";
+        Path path = tempFile(str.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(str, FileUtil.getFileAsString(path));
+        Assert.assertEquals(Arrays.asList("line one", "line two", "line three", "", "line five\u00e9\u4e2d"),
+                FileUtil.getFileAsStrings(path));
+        // Same lines as the Reader based method.
+        Assert.assertEquals(FileUtil.getFileAsStrings(new StringReader(str)), FileUtil.getFileAsStrings(path));
+
+        path = tempFile(str.getBytes(StandardCharsets.UTF_16));
+        Assert.assertEquals(str, FileUtil.getFileAsString(path, StandardCharsets.UTF_16));
+    }
+
+    @Test
+    public void emptyPathTest() throws IOException {
+        Path path = tempFile(new byte[0]);
+        Assert.assertEquals("", FileUtil.getFileAsString(path));
+        Assert.assertEquals(Collections.emptyList(), FileUtil.getFileAsStrings(path));
+
+        path = tempFile("\n".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(Arrays.asList(""), FileUtil.getFileAsStrings(path));
+    }
+
+    @Test
+    public void malformedInputTest() throws IOException {
+        Path path = tempFile(new byte[]{'a', (byte) 0xff, 'b'});
+        Assert.assertEquals("a\ufffdb", FileUtil.getFileAsString(path));
+    }
+
+    @Test
+    public void largeFileTest() throws IOException {
+        // Large enough to be memory mapped.
+        StringBuilder builder = new StringBuilder();
+        List<String> lines = new ArrayList<String>();
+        for (int i = 0; builder.length() < 3 * FileUtil.MAP_THRESHOLD; i++) {
+            String line = "line number " + i + " \u00fc";
+            lines.add(line);
+            builder.append(line).append('\n');
+        }
+        Path path = tempFile(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        long startTime = System.currentTimeMillis();
+        Assert.assertEquals(builder.toString(), FileUtil.getFileAsString(path));
+        Assert.assertEquals(lines, FileUtil.getFileAsStrings(path));
+        System.out.println("Time taken to read a " + Files.size(path) / 1024 + "KB file twice: [" + (System.currentTimeMillis() - startTime) + "ms]");
+    }
+
+    @Test
+    public void linesTest() throws IOException {
+        String str = "one\r\ntwo\n\nfour\r\n";
+        List<String> expected = Arrays.asList("one", "two", "", "four");
+        Assert.assertEquals(expected, FileUtil.lines(new StringReader(str)).collect(Collectors.toList()));
+
+        Path path = tempFile(str.getBytes(StandardCharsets.UTF_8));
+        Stream<String> lines = FileUtil.lines(path);
+        try {
+            Assert.assertEquals(expected, lines.collect(Collectors.toList()));
+        } finally {
+            lines.close();
+        }
+        lines = FileUtil.lines(path);
+        try {
+            Assert.assertEquals("two", lines.skip(1).findFirst().get());
+        } finally {
+            lines.close();
+        }
+    }
+
+    @Test
+    public void lineIteratorTest() throws IOException {
+        final boolean[] closed = new boolean[1];
+        Reader reader = new StringReader("a\nb") {
+            @Override
+            public void close() {
+                closed[0] = true;
+                super.close();
+            }
+        };
+        LineIterator iterator = FileUtil.lineIterator(reader);
+        Assert.assertEquals("a", iterator.next());
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertFalse(closed[0]);
+        Assert.assertEquals("b", iterator.next());
+        Assert.assertFalse(iterator.hasNext());
+        // Closed once the last line is read.
+        Assert.assertTrue(closed[0]);
+        try {
+            iterator.next();
+            Assert.fail("No more lines expected");
+        } catch (NoSuchElementException e) {
+            // Expected
+        }
+
+        LineIterator fileIterator = FileUtil.lineIterator(tempFile("x\ny\n".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals("x", fileIterator.next());
+        fileIterator.close();
+        Assert.assertFalse(fileIterator.hasNext());
+    }
+
+    @Test
+    public void forEachLineTest() throws IOException {
+        Path path = tempFile("one\ntwo\r\nthree\nfour".getBytes(StandardCharsets.UTF_8));
+        final List<String> visited = new ArrayList<String>();
+        LineVisitor visitor = new LineVisitor() {
+            @Override
+            public boolean visit(String line) {
+                visited.add(line);
+                return !line.equals("three");
+            }
+        };
+        Assert.assertEquals(3, FileUtil.forEachLine(path, visitor));
+        Assert.assertEquals(Arrays.asList("one", "two", "three"), visited);
+        visited.clear();
+        Assert.assertEquals(0, FileUtil.forEachLine(tempFile(new byte[0]), visitor));
+    }
+
+    @Test
+    public void lineBatchTest() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 5000; i++)
+            builder.append("line ").append(i).append(i % 3 == 0 ? " \u00e9\u4e2d" : "").append(i % 2 == 0 ? "\r\n" : "\n");
+        builder.append("last line without new line");
+        Path path = tempFile(builder.toString().getBytes(StandardCharsets.UTF_8));
+        List<String> expected = FileUtil.getFileAsStrings(path);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final List<String> ordered = new ArrayList<String>();
+            final int[] batches = new int[1];
+            FileUtil.forEachLineBatch(path, StandardCharsets.UTF_8, pool, 1000, true, new Consumer<List<String>>() {
+                @Override
+                public void accept(List<String> lines) {
+                    batches[0]++;
+                    ordered.addAll(lines);
+                }
+            });
+            Assert.assertEquals(expected, ordered);
+            Assert.assertTrue(batches[0] > 50);
+
+            final List<String> unordered = Collections.synchronizedList(new ArrayList<String>());
+            FileUtil.forEachLineBatch(path, StandardCharsets.UTF_8, pool, 1000, false, new Consumer<List<String>>() {
+                @Override
+                public void accept(List<String> lines) {
+                    unordered.addAll(lines);
+                }
+            });
+            List<String> sortedExpected = new ArrayList<String>(expected);
+            Collections.sort(sortedExpected);
+            Collections.sort(unordered);
+            Assert.assertEquals(sortedExpected, unordered);
+        } finally {
+            pool.shutdown();
+        }
+
+        try {
+            FileUtil.forEachLineBatch(path, StandardCharsets.UTF_16, ForkJoinPool.commonPool(), 1000, true, new Consumer<List<String>>() {
+                @Override
+                public void accept(List<String> lines) {
+                }
+            });
+            Assert.fail("UTF-16 cannot be split on new line bytes");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void lineAlignedChunksTest() throws IOException {
+        byte[] contents = "aaaa\nbb\nc\n\nddddddddd\ne".getBytes(StandardCharsets.US_ASCII);
+        FileChannel channel = FileChannel.open(tempFile(contents));
+        try {
+            long[] boundaries = FileUtil.lineAlignedChunks(channel, 3);
+            Assert.assertArrayEquals(new long[]{0, 5, 8, 11, 21, 22}, boundaries);
+            Assert.assertArrayEquals(new long[]{0, 22}, FileUtil.lineAlignedChunks(channel, 100));
+        } finally {
+            channel.close();
+        }
+        Assert.assertTrue(FileUtil.isNewLineSplittable(StandardCharsets.ISO_8859_1));
+        Assert.assertFalse(FileUtil.isNewLineSplittable(StandardCharsets.UTF_16LE));
+    }
+
+    private static List<String> byteLines(ByteBuffer buffer) {
+        final List<String> lines = new ArrayList<String>();
+        FileUtil.forEachByteLine(buffer, new ByteLineVisitor() {
+            @Override
+            public boolean visit(ByteSlice line) {
+                lines.add(line.toString(StandardCharsets.UTF_8));
+                return true;
+            }
+        });
+        return lines;
+    }
+
+    @Test
+    public void byteLineTest() throws IOException {
+        Assert.assertEquals(Collections.emptyList(), byteLines(ByteBuffer.allocate(0)));
+        Assert.assertEquals(Arrays.asList(""), byteLines(ByteBuffer.wrap("\n".getBytes(StandardCharsets.UTF_8))));
+        Assert.assertEquals(Arrays.asList("a", "", "b\u00e9", "c"),
+                byteLines(ByteBuffer.wrap("a\r\n\nb\u00e9\nc".getBytes(StandardCharsets.UTF_8))));
+
+        // Lines of every length, at every alignment, in heap and direct buffers.
+        Random r = new Random(System.currentTimeMillis());
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            int length = r.nextInt(20);
+            for (int j = 0; j < length; j++)
+                builder.append((char) ('a' + r.nextInt(26)));
+            builder.append(r.nextInt(4) == 0 ? "\r\n" : "\n");
+        }
+        builder.append("tail");
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        List<String> expected = FileUtil.getFileAsStrings(new StringReader(builder.toString()));
+        Assert.assertEquals(expected, byteLines(ByteBuffer.wrap(bytes)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+        direct.position(3);
+        direct.put(bytes);
+        direct.position(3);
+        Assert.assertEquals(expected, byteLines(direct));
+        Assert.assertEquals(3, direct.position());
+
+        Path path = tempFile(bytes);
+        final List<String> prefixed = new ArrayList<String>();
+        final byte[] prefix = "ab".getBytes(StandardCharsets.US_ASCII);
+        long count = FileUtil.forEachByteLine(path, new ByteLineVisitor() {
+            @Override
+            public boolean visit(ByteSlice line) {
+                if (line.startsWith(prefix))
+                    prefixed.add(line.toString());
+                return true;
+            }
+        });
+        Assert.assertEquals(expected.size(), count);
+        for (String line : expected) {
+            if (line.startsWith("ab"))
+                Assert.assertEquals(line, prefixed.remove(0));
+        }
+        Assert.assertTrue(prefixed.isEmpty());
+    }
+
+    @Test
+    public void byteLineEarlyStopTest() throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        long count = FileUtil.forEachByteLine(tempFile("one\ntwo\nthree\n".getBytes(StandardCharsets.UTF_8)), new ByteLineVisitor() {
+            @Override
+            public boolean visit(ByteSlice line) {
+                lines.add(line.toString());
+                return line.length() != 3 || line.charAt(1) != 'w';
+            }
+        });
+        Assert.assertEquals(2, count);
+        Assert.assertEquals(Arrays.asList("one", "two"), lines);
+    }
+
+    @Test
+    public void byteSliceTest() {
+        ByteSlice slice = new ByteSlice(ByteBuffer.wrap("key=value".getBytes(StandardCharsets.US_ASCII)), 0, 9);
+        int separator = slice.indexOf((byte) '=', 0);
+        Assert.assertEquals(3, separator);
+        Assert.assertEquals("key", slice.subSequence(0, separator).toString());
+        Assert.assertEquals("value", slice.subSequence(separator + 1, slice.length()).toString());
+        Assert.assertTrue("value".contentEquals(slice.subSequence(separator + 1, slice.length())));
+        Assert.assertArrayEquals("val".getBytes(StandardCharsets.US_ASCII), slice.subSequence(4, 7).toByteArray());
+        Assert.assertFalse(slice.startsWith("key=value!".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void byteLineSpeedTest() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 8 * 1048576; i++)
+            builder.append("2013-12-27 11:26:00 INFO request ").append(i).append(" served\n");
+        Path path = tempFile(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+        long startTime = System.currentTimeMillis();
+        final long[] matches = new long[1];
+        final byte[] prefix = "2013-12-27 11:26:00 INFO request 9".getBytes(StandardCharsets.US_ASCII);
+        FileUtil.forEachByteLine(path, new ByteLineVisitor() {
+            @Override
+            public boolean visit(ByteSlice line) {
+                if (line.startsWith(prefix))
+                    matches[0]++;
+                return true;
+            }
+        });
+        long byteTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        long stringMatches = 0;
+        for (String line : FileUtil.getFileAsStrings(path)) {
+            if (line.startsWith("2013-12-27 11:26:00 INFO request 9"))
+                stringMatches++;
+        }
+        System.out.println("Time taken to match a prefix in an 8MB file: forEachByteLine [" + byteTime + "ms], getFileAsStrings ["
+                + (System.currentTimeMillis() - startTime) + "ms]");
+        Assert.assertEquals(stringMatches, matches[0]);
+    }
+
+    @Test
+    public void readerSizeHintTest() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 100000; i++)
+            builder.append("line ").append(i).append(NEW_LINE);
+        String str = builder.toString();
+        // Longer than the reused read buffer.
+        Assert.assertEquals(str, FileUtil.getFileAsString(new StringReader(str)));
+        Assert.assertEquals(str, FileUtil.getFileAsString(new StringReader(str), str.length()));
+        Assert.assertEquals(str, FileUtil.getFileAsString(new StringReader(str), 10));
+        Assert.assertEquals("", FileUtil.getFileAsString(new StringReader(""), 100));
+    }
+
+    @Test
+    public void directStringTest() throws IOException {
+        String str = "caf\u00e9 \u00fcber\nline";
+        Assert.assertEquals(str, FileUtil.getFileAsString(tempFile(str.getBytes(StandardCharsets.ISO_8859_1)), StandardCharsets.ISO_8859_1));
+        Assert.assertEquals("a\ufffdb", FileUtil.getFileAsString(tempFile(new byte[]{'a', (byte) 0xe9, 'b'}), StandardCharsets.US_ASCII));
+        Assert.assertEquals(Arrays.asList("caf\u00e9 \u00fcber", "line"),
+                FileUtil.getFileAsStrings(tempFile(str.getBytes(StandardCharsets.ISO_8859_1)), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void reusedReadBufferTest() throws IOException {
+        String template = "Dear ${name},\nYour order ${order} has shipped.\n";
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 50000)
+            builder.append(template);
+        String large = builder.toString();
+        Path path = tempFile(template.getBytes(StandardCharsets.UTF_8));
+
+        // Small reads after a large one must not see what is left in the reused buffer.
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(large, FileUtil.getFileAsString(new StringReader(large)));
+            Assert.assertEquals(template, FileUtil.getFileAsString(new StringReader(template)));
+            Assert.assertEquals("", FileUtil.getFileAsString(new StringReader("")));
+            Assert.assertEquals(template, FileUtil.getFileAsString(path));
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(bytes);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] zlib(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+        deflater.write(bytes);
+        deflater.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays)
+            out.write(array, 0, array.length);
+        return out.toByteArray();
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try {
+            return FileUtil.getFileAsString(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void compressedFileTest() throws IOException {
+        String str = "line one\r\nline two \u00e9\n\nline four";
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        List<String> lines = Arrays.asList("line one", "line two \u00e9", "", "line four");
+        for (Path path : Arrays.asList(tempFile(gzip(bytes)), tempFile(zlib(bytes)))) {
+            Assert.assertEquals(str, FileUtil.getFileAsString(path));
+            Assert.assertEquals(lines, FileUtil.getFileAsStrings(path));
+            Assert.assertEquals(str, readAll(FileUtil.newInputStream(path)));
+            Stream<String> stream = FileUtil.lines(path);
+            try {
+                Assert.assertEquals(lines, stream.collect(Collectors.toList()));
+            } finally {
+                stream.close();
+            }
+            final List<String> visited = new ArrayList<String>();
+            FileUtil.forEachLine(path, new LineVisitor() {
+                @Override
+                public boolean visit(String line) {
+                    visited.add(line);
+                    return true;
+                }
+            });
+            Assert.assertEquals(lines, visited);
+        }
+
+        // Several gzip members, as written by "cat a.gz b.gz".
+        Path multiMember = tempFile(concat(gzip("first\n".getBytes(StandardCharsets.UTF_8)),
+                gzip(new byte[0]), gzip("second\n".getBytes(StandardCharsets.UTF_8))));
+        Assert.assertEquals("first\nsecond\n", FileUtil.getFileAsString(multiMember));
+        Assert.assertEquals("first\nsecond\n", readAll(FileUtil.newInputStream(multiMember)));
+    }
+
+    @Test
+    public void compressedByteAndBatchReadsTest() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20000; i++)
+            builder.append("line ").append(i).append(i % 2 == 0 ? "\r\n" : "\n");
+        // Longer than the decompression buffer.
+        for (int i = 0; i < 100000; i++)
+            builder.append((char) ('a' + i % 26));
+        builder.append("\nlast line without new line");
+        byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+        List<String> expected = FileUtil.getFileAsStrings(tempFile(bytes));
+
+        for (Path path : Arrays.asList(tempFile(gzip(bytes)), tempFile(zlib(bytes)))) {
+            final List<String> byteLines = new ArrayList<String>();
+            long count = FileUtil.forEachByteLine(path, new ByteLineVisitor() {
+                @Override
+                public boolean visit(ByteSlice line) {
+                    byteLines.add(line.toString());
+                    return true;
+                }
+            });
+            Assert.assertEquals(expected.size(), count);
+            Assert.assertEquals(expected, byteLines);
+
+            final List<String> batchLines = new ArrayList<String>();
+            final int[] batches = new int[1];
+            FileUtil.forEachLineBatch(path, StandardCharsets.UTF_8, ForkJoinPool.commonPool(), 10000, true, new Consumer<List<String>>() {
+                @Override
+                public void accept(List<String> lines) {
+                    batches[0]++;
+                    batchLines.addAll(lines);
+                }
+            });
+            Assert.assertEquals(expected, batchLines);
+            Assert.assertTrue(batches[0] > 10);
+        }
+    }
+
+    @Test
+    public void gzipHeaderFieldsTest() throws IOException {
+        byte[] bytes = "payload".getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(bytes);
+        deflater.finish();
+        byte[] body = new byte[100];
+        int bodyLength = deflater.deflate(body);
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        long crcValue = crc.getValue();
+
+        // FHCRC, FEXTRA, FNAME and FCOMMENT set.
+        byte[] header = {0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 3, 3, 0, 'a', 'b', 'c', 'n', '.', 't', 'x', 't', 0, 'c', 0, 0, 0};
+        CRC32 headerCrc = new CRC32();
+        headerCrc.update(header, 0, header.length - 2);
+        header[header.length - 2] = (byte) headerCrc.getValue();
+        header[header.length - 1] = (byte) (headerCrc.getValue() >> 8);
+        byte[] trailer = {(byte) crcValue, (byte) (crcValue >> 8), (byte) (crcValue >> 16), (byte) (crcValue >> 24), 7, 0, 0, 0};
+        byte[] file = concat(header, Arrays.copyOf(body, bodyLength), trailer);
+        Assert.assertEquals("payload", FileUtil.getFileAsString(tempFile(file)));
+        Assert.assertEquals("payload", readAll(new GZIPInputStream(new ByteArrayInputStream(file))));
+    }
+
+    @Test
+    public void corruptCompressedFileTest() throws IOException {
+        byte[] gzip = gzip("some text that is long enough".getBytes(StandardCharsets.UTF_8));
+        byte[] badCrc = gzip.clone();
+        badCrc[badCrc.length - 8] ^= 1;
+        try {
+            FileUtil.getFileAsString(tempFile(badCrc));
+            Assert.fail("CRC mismatch must be detected");
+        } catch (ZipException e) {
+            // Expected
+        }
+        try {
+            readAll(FileUtil.newInputStream(tempFile(Arrays.copyOf(gzip, gzip.length - 10))));
+            Assert.fail("Truncated data must be detected");
+        } catch (EOFException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void gzipSizeTrailerIsOnlyAHintTest() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 200000; i++)
+            builder.append("line ").append(i).append('\n');
+        String str = builder.toString();
+
+        // The trailer holds the size of the small last member only.
+        Path multiMember = tempFile(concat(gzip(str.getBytes(StandardCharsets.UTF_8)), gzip("end\n".getBytes(StandardCharsets.UTF_8))));
+        Assert.assertEquals(str + "end\n", FileUtil.getFileAsString(multiMember));
+
+        // A corrupt size of almost 4GB is not allocated up front, the size check fails instead.
+        byte[] hugeSize = gzip("small".getBytes(StandardCharsets.UTF_8));
+        Arrays.fill(hugeSize, hugeSize.length - 4, hugeSize.length, (byte) 0xff);
+        try {
+            FileUtil.getFileAsString(tempFile(hugeSize));
+            Assert.fail("Size mismatch must be detected");
+        } catch (ZipException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void plainTextLikeZlibHeaderTest() throws IOException {
+        // "x^" is a valid zlib header, but the text is not zlib data.
+        String str = "x^2 + y^2 = z^2\n";
+        Path path = tempFile(str.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(str, FileUtil.getFileAsString(path));
+        Assert.assertEquals(str, readAll(FileUtil.newInputStream(path)));
+
+        // Short texts run out of input before inflating fails.
+        for (String shortStr : Arrays.asList("x^2\n", "x^y", "x^")) {
+            Path shortPath = tempFile(shortStr.getBytes(StandardCharsets.UTF_8));
+            Assert.assertEquals(shortStr, FileUtil.getFileAsString(shortPath));
+            Assert.assertEquals(Arrays.asList(shortStr.split("\n")), FileUtil.getFileAsStrings(shortPath));
+            Assert.assertEquals(shortStr, readAll(FileUtil.newInputStream(shortPath)));
+        }
+        byte[] bytes = {'x', '^', 0, 0, '\n'};
+        for (int c = ' '; c <= '~'; c++) {
+            for (int d = ' '; d <= '~'; d++) {
+                bytes[2] = (byte) c;
+                bytes[3] = (byte) d;
+                Assert.assertEquals(InflatingInputStream.NONE, InflatingInputStream.detect(bytes, bytes.length));
+            }
+        }
+        Assert.assertEquals(InflatingInputStream.ZLIB, InflatingInputStream.detect(zlib(new byte[]{'a'}), zlib(new byte[]{'a'}).length));
+
+        // The Inflater that rejected the text goes back to the pool and still works.
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(str, FileUtil.getFileAsString(path));
+            Assert.assertEquals(str, FileUtil.getFileAsString(tempFile(zlib(str.getBytes(StandardCharsets.UTF_8)))));
+        }
+        Assert.assertEquals("a", readAll(FileUtil.newInputStream(tempFile(new byte[]{'a'}))));
+        Assert.assertEquals("", readAll(FileUtil.newInputStream(tempFile(new byte[0]))));
+    }
+
+    @Test
+    public void compressedSpeedTest() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        Random r = new Random(System.currentTimeMillis());
+        for (int i = 0; builder.length() < 8 * 1048576; i++)
+            builder.append("2013-12-27 11:26:00 INFO request ").append(i).append(" took ").append(r.nextInt(1000)).append("ms\n");
+        Path path = tempFile(gzip(builder.toString().getBytes(StandardCharsets.UTF_8)));
+
+        long startTime = System.currentTimeMillis();
+        List<String> expected = FileUtil.getFileAsStrings(new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8));
+        long wrappedTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        List<String> lines = FileUtil.getFileAsStrings(path);
+        System.out.println("Time taken to read an 8MB gzip file: GZIPInputStream [" + wrappedTime + "ms], getFileAsStrings(Path) ["
+                + (System.currentTimeMillis() - startTime) + "ms]");
+        Assert.assertEquals(expected, lines);
+    }
 }
@@ -0,0 +1,200 @@
+package org.colossaldb.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Test class for the index based combinatorics engine.
+ */
+public class IntCombinatoricUtilTest {
+
+    @Test
+    public void testForEachCombinationOrder() {
+        final List<String> actual = new ArrayList<String>();
+        Assert.assertTrue(IntCombinatoricUtil.forEachCombination(5, 3, new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                actual.add(Arrays.toString(indices));
+                return true;
+            }
+        }));
+        Assert.assertEquals(Arrays.asList("[0, 1, 2]", "[0, 1, 3]", "[0, 1, 4]", "[0, 2, 3]", "[0, 2, 4]",
+                "[0, 3, 4]", "[1, 2, 3]", "[1, 2, 4]", "[1, 3, 4]", "[2, 3, 4]"), actual);
+    }
+
+    @Test
+    public void testEarlyTermination() {
+        final int[] count = new int[1];
+        Assert.assertFalse(IntCombinatoricUtil.forEachPermutation(6, 6, PermutationOrder.LEXICOGRAPHIC, new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                return ++count[0] < 10;
+            }
+        }));
+        Assert.assertEquals(10, count[0]);
+    }
+
+    @Test
+    public void testEmptyEnumerations() {
+        IntCombinationVisitor failing = new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                throw new AssertionError("No combination expected");
+            }
+        };
+        Assert.assertTrue(IntCombinatoricUtil.forEachCombination(3, 0, failing));
+        Assert.assertTrue(IntCombinatoricUtil.forEachCombination(3, 4, failing));
+        Assert.assertTrue(IntCombinatoricUtil.forEachPermutation(0, 1, PermutationOrder.MINIMAL_CHANGE, failing));
+    }
+
+    @Test
+    public void testMultisetEnumerations() {
+        final List<String> actual = new ArrayList<String>();
+        IntCombinationVisitor collector = new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                actual.add(Arrays.toString(indices));
+                return true;
+            }
+        };
+
+        // Elements 0, 0, 2 (element 1 has no copies).
+        IntCombinatoricUtil.forEachMultisetCombination(new int[]{2, 0, 1}, 2, collector);
+        Assert.assertEquals(Arrays.asList("[0, 0]", "[0, 2]"), actual);
+
+        actual.clear();
+        IntCombinatoricUtil.forEachMultisetPermutation(new int[]{2, 0, 1}, 3, collector);
+        Assert.assertEquals(Arrays.asList("[0, 0, 2]", "[0, 2, 0]", "[2, 0, 0]"), actual);
+
+        actual.clear();
+        IntCombinatoricUtil.forEachMultisetPermutation(new int[]{2, 0, 1}, 2, collector);
+        Assert.assertEquals(Arrays.asList("[0, 0]", "[0, 2]", "[2, 0]"), actual);
+    }
+
+    @Test
+    public void testRevolvingDoorCombinations() {
+        for (int n = 1; n <= 10; n++) {
+            for (int r = 1; r <= n; r++) {
+                final Set<String> seen = new HashSet<String>();
+                final int[][] previous = new int[1][];
+                final long[] sum = new long[1];
+                IntCombinatoricUtil.forEachRevolvingDoorCombination(n, r, new IntSwapVisitor() {
+                    @Override
+                    public boolean visit(int[] indices, int removed, int added) {
+                        for (int i = 1; i < indices.length; i++)
+                            Assert.assertTrue("Not increasing: " + Arrays.toString(indices), indices[i - 1] < indices[i]);
+                        Assert.assertTrue("Repeated: " + Arrays.toString(indices), seen.add(Arrays.toString(indices)));
+
+                        if (previous[0] == null) {
+                            Assert.assertEquals(-1, removed);
+                            Assert.assertEquals(-1, added);
+                            for (int index : indices)
+                                sum[0] += index;
+                        } else {
+                            // Exactly the reported element was swapped.
+                            Set<Integer> expected = asSet(previous[0]);
+                            Assert.assertTrue(expected.remove(removed));
+                            Assert.assertTrue(expected.add(added));
+                            Assert.assertEquals(expected, asSet(indices));
+                            sum[0] += added - removed;
+                        }
+
+                        // The incrementally maintained aggregate matches the combination.
+                        long actualSum = 0;
+                        for (int index : indices)
+                            actualSum += index;
+                        Assert.assertEquals(actualSum, sum[0]);
+                        previous[0] = indices.clone();
+                        return true;
+                    }
+                });
+                Assert.assertEquals(CombinatoricUtil.binomial(n, r), seen.size());
+            }
+        }
+    }
+
+    @Test
+    public void testMinimalChangePermutationSwaps() {
+        final int[] count = new int[1];
+        final int[][] previous = new int[1][];
+        IntCombinatoricUtil.forEachMinimalChangePermutation(6, new IntSwapVisitor() {
+            @Override
+            public boolean visit(int[] indices, int first, int second) {
+                if (previous[0] != null) {
+                    int[] expected = previous[0].clone();
+                    int temp = expected[first];
+                    expected[first] = expected[second];
+                    expected[second] = temp;
+                    Assert.assertTrue(Arrays.equals(expected, indices));
+                } else {
+                    Assert.assertEquals(-1, first);
+                }
+                previous[0] = indices.clone();
+                count[0]++;
+                return true;
+            }
+        });
+        Assert.assertEquals(720, count[0]);
+    }
+
+    private static Set<Integer> asSet(int[] indices) {
+        Set<Integer> set = new HashSet<Integer>();
+        for (int index : indices)
+            set.add(index);
+        return set;
+    }
+
+    @Test
+    public void testSelect() {
+        Assert.assertEquals(Arrays.asList('d', 'a', 'c'),
+                IntCombinatoricUtil.select(Arrays.asList('a', 'b', 'c', 'd'), new int[]{3, 0, 2}));
+    }
+
+    @Test
+    public void testNoAllocationPerCombination() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return; // Allocation counters are not available on this JVM.
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        final long[] sum = new long[1];
+        IntCombinationVisitor visitor = new IntCombinationVisitor() {
+            @Override
+            public boolean visit(int[] indices) {
+                sum[0] += indices[0];
+                return true;
+            }
+        };
+
+        // Warm up, then measure. 20 choose 10 = 184756 combinations.
+        IntCombinatoricUtil.forEachCombination(20, 10, visitor);
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        IntCombinatoricUtil.forEachCombination(20, 10, visitor);
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+
+        // Only the index buffer is allocated, independent of the number of combinations.
+        Assert.assertTrue("Allocated bytes: " + (after - before), after - before < 4096);
+    }
+}
@@ -0,0 +1,183 @@
+package org.colossaldb.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Test class for MappedSortedKeyArray.
+ */
+public class MappedSortedKeyArrayTest {
+
+    private static byte[] key(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static byte[][] keys(long... values) {
+        byte[][] keys = new byte[values.length][];
+        for (int i = 0; i < values.length; i++)
+            keys[i] = key(values[i]);
+        return keys;
+    }
+
+    private static List<Long> values(MappedSortedKeyArray array) {
+        List<Long> values = new ArrayList<Long>();
+        for (long i = 0; i < array.size(); i++)
+            values.add(ByteBuffer.wrap(array.get(i)).getLong());
+        return values;
+    }
+
+    @Test
+    public void testDirect() throws IOException {
+        MappedSortedKeyArray array = MappedSortedKeyArray.allocateDirect(8);
+        array.addAll(keys(5, 1, 9, 3));
+        array.addAll(keys(4, 10, 0, 3));
+        array.add(key(7));
+        Assert.assertEquals(Arrays.asList(0L, 1L, 3L, 3L, 4L, 5L, 7L, 9L, 10L), values(array));
+        Assert.assertEquals(2, array.indexOf(key(3)));
+        Assert.assertEquals(-1, array.indexOf(key(6)));
+        Assert.assertTrue(array.contains(key(10)));
+        Assert.assertEquals(6, array.ceilingIndex(key(6)));
+        Assert.assertEquals(4, array.higherIndex(key(3)));
+        Assert.assertFalse(array.addAll(new byte[0][]));
+        try {
+            array.add(new byte[4]);
+            Assert.fail("Keys of a different width must be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        array.close();
+    }
+
+    @Test
+    public void testUnsignedOrder() {
+        MappedSortedKeyArray array = MappedSortedKeyArray.allocateDirect(3);
+        array.addAll(new byte[][]{{(byte) 0xff, 0, 0}, {1, 2, 3}, {1, (byte) 0x80, 0}, {0, 0, 1}});
+        Assert.assertArrayEquals(new byte[]{0, 0, 1}, array.get(0));
+        Assert.assertArrayEquals(new byte[]{1, 2, 3}, array.get(1));
+        Assert.assertArrayEquals(new byte[]{1, (byte) 0x80, 0}, array.get(2));
+        Assert.assertArrayEquals(new byte[]{(byte) 0xff, 0, 0}, array.get(3));
+    }
+
+    @Test
+    public void testRangeScan() {
+        MappedSortedKeyArray array = MappedSortedKeyArray.allocateDirect(8);
+        array.addAll(keys(10, 20, 30, 40, 50));
+        final List<Long> visited = new ArrayList<Long>();
+        ByteKeyVisitor collect = new ByteKeyVisitor() {
+            @Override
+            public boolean visit(long index, byte[] key) {
+                visited.add(ByteBuffer.wrap(key).getLong());
+                return visited.size() < 3;
+            }
+        };
+        Assert.assertEquals(2, array.forEachInRange(key(15), key(40), collect));
+        Assert.assertEquals(Arrays.asList(20L, 30L), visited);
+        visited.clear();
+        Assert.assertEquals(3, array.forEachInRange(null, null, collect));
+        Assert.assertEquals(Arrays.asList(10L, 20L, 30L), visited);
+        visited.clear();
+        Assert.assertEquals(0, array.forEachInRange(key(45), key(42), collect));
+    }
+
+    @Test
+    public void testMappedFileReopen() throws IOException {
+        Path path = Files.createTempFile("keys", ".bin");
+        try {
+            Random r = new Random(System.currentTimeMillis());
+            List<Long> expected = new ArrayList<Long>();
+            // Small segments, so the keys span several of them.
+            MappedSortedKeyArray array = MappedSortedKeyArray.create(path, 8, 500);
+            for (int batch = 0; batch < 20; batch++) {
+                long[] values = new long[r.nextInt(300) + 1];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = r.nextInt(100000);
+                    expected.add(values[i]);
+                }
+                array.addAll(keys(values));
+            }
+            Collections.sort(expected);
+            Assert.assertEquals(expected, values(array));
+            array.close();
+
+            array = MappedSortedKeyArray.open(path);
+            Assert.assertEquals(8, array.getKeyWidth());
+            Assert.assertEquals(expected, values(array));
+            for (int i = 0; i < 100; i++) {
+                long value = expected.get(r.nextInt(expected.size()));
+                Assert.assertEquals(expected.indexOf(value), array.indexOf(key(value)));
+            }
+            array.addAll(keys(-1, 200000));
+            array.close();
+
+            array = MappedSortedKeyArray.open(path);
+            Assert.assertEquals(expected.size() + 2, array.size());
+            // Unsigned order: -1 is the largest key.
+            Assert.assertEquals(-1L, ByteBuffer.wrap(array.get(array.size() - 1)).getLong());
+            Assert.assertEquals(200000L, ByteBuffer.wrap(array.get(array.size() - 2)).getLong());
+            array.close();
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testOpenInterruptedMerge() throws IOException {
+        Path path = Files.createTempFile("keys", ".bin");
+        try {
+            MappedSortedKeyArray array = MappedSortedKeyArray.create(path, 8);
+            array.addAll(keys(5, 1, 3));
+            array.close();
+
+            // A crash during a merge leaves the merge flag of the header set.
+            byte[] bytes = Files.readAllBytes(path);
+            Assert.assertEquals(0, ByteBuffer.wrap(bytes).getInt(12));
+            ByteBuffer.wrap(bytes).putInt(12, 1);
+            Files.write(path, bytes);
+            try {
+                MappedSortedKeyArray.open(path);
+                Assert.fail("A file left in the middle of a merge must be rejected");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testOpenInvalidFile() throws IOException {
+        Path path = Files.createTempFile("keys", ".bin");
+        try {
+            Files.write(path, new byte[64]);
+            MappedSortedKeyArray.open(path);
+            Assert.fail("Invalid file must be rejected");
+        } catch (IOException e) {
+            // Expected
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.junit.Test;
 
 import java.util.*;
 import java.util.logging.Level;
+import java.util.stream.Collectors;
 import java.util.logging.Logger;
 
 /**
@@ -105,6 +106,203 @@ public class PermutationsUtilTest {
         Assert.assertEquals(expected, actual);
     }
 
+    @Test
+    public void testLexicographicIterator() {
+        Iterator<List<Character>> iterator = CombinatoricUtil.permutationsIterator(Arrays.asList('a', 'b', 'c'), 3);
+        List<String> actual = new ArrayList<String>();
+        while (iterator.hasNext())
+            actual.add(asString(iterator.next()));
+        Assert.assertEquals(Arrays.asList("abc", "acb", "bac", "bca", "cab", "cba"), actual);
+
+        // Partial permutations are in lexicographic order as well.
+        iterator = CombinatoricUtil.permutationsIterator(Arrays.asList('a', 'b', 'c', 'd'), 2);
+        actual.clear();
+        while (iterator.hasNext())
+            actual.add(asString(iterator.next()));
+        Assert.assertEquals(Arrays.asList("ab", "ac", "ad", "ba", "bc", "bd", "ca", "cb", "cd", "da", "db", "dc"), actual);
+    }
+
+    @Test
+    public void testIteratorMatchesPermutations() {
+        for (PermutationOrder order : PermutationOrder.values()) {
+            for (int i = 1; i <= integerList.size(); i++) {
+                Set<Collection<Integer>> actual = new HashSet<Collection<Integer>>();
+                Iterator<List<Integer>> iterator = CombinatoricUtil.permutationsIterator(integerList, i, order);
+                int count = 0;
+                while (iterator.hasNext()) {
+                    actual.add(iterator.next());
+                    count++;
+                }
+                Assert.assertEquals("Duplicate permutations for order " + order, actual.size(), count);
+                Assert.assertEquals(new HashSet<Collection<Integer>>(CombinatoricUtil.permutations(integerList, i)), actual);
+            }
+        }
+    }
+
+    @Test
+    public void testMinimalChangeSwapsTwoElements() {
+        PermutationGenerator generator = new PermutationGenerator(7, 7, PermutationOrder.MINIMAL_CHANGE);
+        int[] previous = null;
+        int count = 0;
+        while (generator.next()) {
+            int[] current = generator.indices();
+            if (previous != null) {
+                int differences = 0;
+                for (int i = 0; i < current.length; i++) {
+                    if (current[i] != previous[i])
+                        differences++;
+                }
+                Assert.assertEquals(2, differences);
+            }
+            previous = current.clone();
+            count++;
+        }
+        Assert.assertEquals(CombinatoricUtil.factorial(7), count);
+    }
+
+    @Test
+    public void testGeneratorLargeWalk() {
+        // 10! orderings, walked without holding them in memory.
+        for (PermutationOrder order : PermutationOrder.values()) {
+            PermutationGenerator generator = new PermutationGenerator(10, 10, order);
+            long startTime = System.nanoTime();
+            int count = 0;
+            while (generator.next())
+                count++;
+            long endTime = System.nanoTime();
+            logger.log(Level.FINER, "Time taken to walk 10! permutations in " + order + " order = " + (endTime - startTime) / 1000000L + " ms.");
+            Assert.assertEquals(CombinatoricUtil.factorial(10), count);
+        }
+    }
+
+    @Test
+    public void testGeneratorEdgeCases() {
+        Assert.assertFalse(new PermutationGenerator(3, 0, PermutationOrder.LEXICOGRAPHIC).next());
+        Assert.assertFalse(new PermutationGenerator(3, 4, PermutationOrder.MINIMAL_CHANGE).next());
+        Assert.assertEquals(1, CombinatoricUtil.permutationsStream(Arrays.asList(1), 1, PermutationOrder.MINIMAL_CHANGE).count());
+    }
+
+    @Test
+    public void testRankAndUnrankPermutation() {
+        for (int r = 1; r <= 6; r++) {
+            PermutationGenerator generator = new PermutationGenerator(6, r, PermutationOrder.LEXICOGRAPHIC);
+            long expectedRank = 0;
+            while (generator.next()) {
+                int[] indices = generator.indices();
+                Assert.assertEquals(expectedRank, CombinatoricUtil.rankPermutation(indices, 6));
+                Assert.assertTrue(Arrays.equals(indices, CombinatoricUtil.unrankPermutation(expectedRank, 6, r)));
+                expectedRank++;
+            }
+        }
+
+        // Random access: the last permutation of 20 elements is the reversed order.
+        int[] last = CombinatoricUtil.unrankPermutation(2432902008176640000L - 1, 20, 20);
+        for (int i = 0; i < 20; i++)
+            Assert.assertEquals(19 - i, last[i]);
+        Assert.assertEquals(2432902008176640000L - 1, CombinatoricUtil.rankPermutation(last, 20));
+    }
+
+    @Test
+    public void testRankPermutationOverflow() {
+        // The first permutations of 21 elements still have a small rank.
+        int[] permutation = new int[21];
+        for (int i = 0; i < 21; i++)
+            permutation[i] = i;
+        Assert.assertEquals(0, CombinatoricUtil.rankPermutation(permutation, 21));
+
+        // The reversed order has rank 21! - 1, which does not fit in a long.
+        for (int i = 0; i < 21; i++)
+            permutation[i] = 20 - i;
+        try {
+            CombinatoricUtil.rankPermutation(permutation, 21);
+            Assert.fail("The rank of the reversed permutation of 21 elements exceeds Long.MAX_VALUE");
+        } catch (ArithmeticException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRankPermutationInvalidInput() {
+        try {
+            CombinatoricUtil.rankPermutation(new int[]{1, 1}, 3);
+            Assert.fail("Repeated indices are not a permutation");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testParallelPermutationsStream() {
+        for (int r = 1; r <= 5; r++) {
+            List<List<Integer>> expected = new ArrayList<List<Integer>>();
+            Iterator<List<Integer>> iterator = CombinatoricUtil.permutationsIterator(integerList, r);
+            while (iterator.hasNext())
+                expected.add(iterator.next());
+
+            List<List<Integer>> parallel = CombinatoricUtil.permutationsStream(integerList, r, PermutationOrder.LEXICOGRAPHIC)
+                    .parallel().collect(Collectors.<List<Integer>>toList());
+            Assert.assertEquals(expected, parallel);
+        }
+        Assert.assertEquals(0, CombinatoricUtil.permutationsSpliterator(integerList, 9).estimateSize());
+    }
+
+    @Test
+    public void testHugePermutationsStreamIsLazy() {
+        List<Integer> input = new ArrayList<Integer>();
+        for (int i = 0; i < 21; i++)
+            input.add(i);
+
+        // 21! does not fit in a long, the lexicographic stream still hands out the first few permutations.
+        List<List<Integer>> first = CombinatoricUtil.permutationsStream(input, 21, PermutationOrder.LEXICOGRAPHIC)
+                .limit(2).collect(Collectors.<List<Integer>>toList());
+        Assert.assertEquals(2, first.size());
+        Assert.assertEquals(input, first.get(0));
+        List<Integer> expected = new ArrayList<Integer>(input);
+        Collections.swap(expected, 19, 20);
+        Assert.assertEquals(expected, first.get(1));
+    }
+
+    @Test
+    public void testMultisetPermutations() {
+        List<Character> input = Arrays.asList('a', 'a', 'a', 'a', 'b', 'b', 'b', 'b', 'c', 'c');
+
+        // Full length: 10! / (4! 4! 2!) distinct orderings, in lexicographic order.
+        Iterator<List<Character>> iterator = CombinatoricUtil.multisetPermutationsIterator(input, input.size());
+        List<String> all = new ArrayList<String>();
+        while (iterator.hasNext())
+            all.add(asString(iterator.next()));
+        Assert.assertEquals(CombinatoricUtil.multinomial(4, 4, 2), all.size());
+        Assert.assertEquals("aaaabbbbcc", all.get(0));
+        Assert.assertEquals("ccbbbbaaaa", all.get(all.size() - 1));
+        List<String> sorted = new ArrayList<String>(all);
+        Collections.sort(sorted);
+        Assert.assertEquals(sorted, all);
+        Assert.assertEquals(all.size(), new HashSet<String>(all).size());
+
+        // Partial permutations match the positional permutations once duplicates are removed.
+        for (int r = 1; r <= 4; r++) {
+            Set<List<Character>> expected = new HashSet<List<Character>>();
+            Iterator<List<Character>> positional = CombinatoricUtil.permutationsIterator(input, r);
+            while (positional.hasNext())
+                expected.add(positional.next());
+
+            List<List<Character>> actual = new ArrayList<List<Character>>();
+            iterator = CombinatoricUtil.multisetPermutationsIterator(input, r);
+            while (iterator.hasNext())
+                actual.add(iterator.next());
+            Assert.assertEquals(expected.size(), actual.size());
+            Assert.assertEquals(expected, new HashSet<List<Character>>(actual));
+            Assert.assertEquals(expected, new HashSet<Collection<Character>>(CombinatoricUtil.permutations(input, r)));
+        }
+    }
+
+    private static String asString(List<Character> characters) {
+        StringBuilder builder = new StringBuilder();
+        for (Character c : characters)
+            builder.append(c);
+        return builder.toString();
+    }
+
     /**
      * Helper method to make a set of collections.
      *
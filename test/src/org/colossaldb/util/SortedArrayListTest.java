@@ -5,8 +5,13 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 /**
  * Created with IntelliJ IDEA.
@@ -84,6 +89,324 @@ public class SortedArrayListTest {
                 initial.toArray(new Integer[initial.size()]));
     }
 
+    @Test
+    public void testAddAllAppend() {
+        SortedArrayList<Integer> initial = new SortedArrayList<Integer>(Arrays.asList(-10, 5, 4, 3, 7, 3));
+        initial.addAll(Arrays.asList(9, 7, 8));
+        Assert.assertArrayEquals(new Integer[]{-10, 3, 3, 4, 5, 7, 7, 8, 9},
+                initial.toArray(new Integer[initial.size()]));
+    }
+
+    @Test
+    public void testAddAllSmallBatchIntoLargeList() {
+        Random r = new Random(17);
+        List<Integer> large = new ArrayList<Integer>();
+        for (int i = 0; i < 10000; i++)
+            large.add(r.nextInt(5000));
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(large);
+
+        List<Integer> batch = Arrays.asList(2500, -1, 4999, 0, 2500, 6000);
+        list.addAll(batch);
+        large.addAll(batch);
+        Collections.sort(large);
+        Assert.assertEquals(large, list);
+    }
+
+    @Test
+    public void testAddAllRandomBatches() {
+        Random r = new Random(System.currentTimeMillis());
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int round = 0; round < 200; round++) {
+            List<Integer> batch = new ArrayList<Integer>();
+            int batchSize = r.nextInt(round % 10 == 0 ? 200 : 5) + 1;
+            for (int i = 0; i < batchSize; i++)
+                batch.add(r.nextInt(1000));
+            list.addAll(batch);
+            expected.addAll(batch);
+        }
+        Collections.sort(expected);
+        Assert.assertEquals(expected, list);
+    }
+
+    // Compare on the first character only.
+    private static final Comparator<String> FIRST_CHAR = new Comparator<String>() {
+        @Override
+        public int compare(String o1, String o2) {
+            return o1.charAt(0) - o2.charAt(0);
+        }
+    };
+
+    @Test
+    public void testAddAllKeepsOrderOfEqualElements() {
+        // Compare on the first character only.
+        Comparator<String> firstChar = new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return o1.charAt(0) - o2.charAt(0);
+            }
+        };
+        SortedArrayList<String> list = new SortedArrayList<String>(firstChar, Arrays.asList("b1", "a1", "c1", "b2"));
+        list.addAll(Arrays.asList("b3", "a2", "b4"));
+        Assert.assertEquals(Arrays.asList("a1", "a2", "b1", "b2", "b3", "b4", "c1"), list);
+    }
+
+    @Test
+    public void testStablePolicy() {
+        SortedArrayList<String> list = new SortedArrayList<String>(FIRST_CHAR, SortedArrayList.DuplicatePolicy.STABLE);
+        for (String s : Arrays.asList("b1", "a1", "b2", "c1", "b3", "b4", "a2", "b5"))
+            list.add(s);
+        Assert.assertEquals(Arrays.asList("a1", "a2", "b1", "b2", "b3", "b4", "b5", "c1"), list);
+        list.addAll(Arrays.asList("b6", "a3"));
+        Assert.assertEquals(Arrays.asList("a1", "a2", "a3", "b1", "b2", "b3", "b4", "b5", "b6", "c1"), list);
+    }
+
+    @Test
+    public void testKeepFirstPolicy() {
+        SortedArrayList<String> list = new SortedArrayList<String>(FIRST_CHAR, SortedArrayList.DuplicatePolicy.KEEP_FIRST,
+                Arrays.asList("b1", "a1", "b2"));
+        Assert.assertEquals(Arrays.asList("a1", "b1"), list);
+        Assert.assertFalse(list.add("a2"));
+        Assert.assertTrue(list.add("c1"));
+        Assert.assertFalse(list.addAll(Arrays.asList("c2", "b3")));
+        Assert.assertTrue(list.addAll(Arrays.asList("d1", "c3", "d2", "e1")));
+        Assert.assertEquals(Arrays.asList("a1", "b1", "c1", "d1", "e1"), list);
+    }
+
+    @Test
+    public void testKeepLastPolicy() {
+        SortedArrayList<String> list = new SortedArrayList<String>(FIRST_CHAR, SortedArrayList.DuplicatePolicy.KEEP_LAST,
+                Arrays.asList("b1", "a1", "b2"));
+        Assert.assertEquals(Arrays.asList("a1", "b2"), list);
+        Assert.assertTrue(list.add("a2"));
+        Assert.assertTrue(list.addAll(Arrays.asList("d1", "b3", "d2", "c1")));
+        Assert.assertEquals(Arrays.asList("a2", "b3", "c1", "d2"), list);
+    }
+
+    @Test
+    public void testRejectPolicy() {
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(SortedArrayList.DuplicatePolicy.REJECT);
+        list.addAll(Arrays.asList(5, 1, 3));
+        try {
+            list.add(3);
+            Assert.fail("Duplicate must be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            list.addAll(Arrays.asList(7, 0, 5));
+            Assert.fail("Duplicate must be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            list.addAll(Arrays.asList(7, 0, 7));
+            Assert.fail("Duplicate in the batch must be rejected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        Assert.assertEquals(Arrays.asList(1, 3, 5), list);
+        list.addAll(Arrays.asList(4, 0));
+        Assert.assertEquals(Arrays.asList(0, 1, 3, 4, 5), list);
+    }
+
+    @Test
+    public void testKeepFirstPolicyRandomBatches() {
+        Random r = new Random(System.currentTimeMillis());
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(SortedArrayList.DuplicatePolicy.KEEP_FIRST);
+        TreeSet<Integer> expected = new TreeSet<Integer>();
+        for (int i = 0; i < 200; i++) {
+            List<Integer> batch = new ArrayList<Integer>();
+            int batchSize = r.nextInt(50);
+            for (int j = 0; j < batchSize; j++)
+                batch.add(r.nextInt(2000));
+            int single = r.nextInt(2000);
+            Assert.assertEquals(expected.addAll(batch), list.addAll(batch));
+            Assert.assertEquals(expected.add(single), list.add(single));
+            Assert.assertEquals(new ArrayList<Integer>(expected), list);
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        List<SortedArrayList<String>> shards = new ArrayList<SortedArrayList<String>>();
+        shards.add(new SortedArrayList<String>(FIRST_CHAR, Arrays.asList("b1", "d1", "a1")));
+        shards.add(new SortedArrayList<String>(FIRST_CHAR));
+        shards.add(new SortedArrayList<String>(FIRST_CHAR, Arrays.asList("c2", "b2", "a2")));
+        shards.add(new SortedArrayList<String>(FIRST_CHAR, Arrays.asList("e3", "a3")));
+        SortedArrayList<String> merged = SortedArrayList.merge(FIRST_CHAR, shards);
+        // Equal elements keep the order of the shards.
+        Assert.assertEquals(Arrays.asList("a1", "a2", "a3", "b1", "b2", "c2", "d1", "e3"), merged);
+        merged.add("c0");
+        Assert.assertEquals(Arrays.asList("a1", "a2", "a3", "b1", "b2", "c2", "c0", "d1", "e3"), merged);
+        Assert.assertTrue(SortedArrayList.merge(FIRST_CHAR, new ArrayList<SortedArrayList<String>>()).isEmpty());
+    }
+
+    @Test
+    public void testMergeIterators() {
+        List<Iterator<Integer>> sources = new ArrayList<Iterator<Integer>>();
+        sources.add(Arrays.asList(1, 4, 9).iterator());
+        sources.add(Arrays.asList(2, 3, 10, 11).iterator());
+        sources.add(Collections.<Integer>emptyList().iterator());
+        sources.add(Arrays.asList(0, 4).iterator());
+        final List<Integer> consumed = new ArrayList<Integer>();
+        SortedArrayList.merge(null, sources, true, new Consumer<Integer>() {
+            @Override
+            public void accept(Integer integer) {
+                consumed.add(integer);
+            }
+        });
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 4, 9, 10, 11), consumed);
+
+        sources.clear();
+        sources.add(Arrays.asList(1, 5, 3).iterator());
+        sources.add(Arrays.asList(2, 6).iterator());
+        try {
+            SortedArrayList.merge(null, sources, 5, true);
+            Assert.fail("Unsorted source must be detected");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testMergeSpeed() {
+        Random r = new Random(System.currentTimeMillis());
+        List<SortedArrayList<Integer>> shards = new ArrayList<SortedArrayList<Integer>>();
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int shard = 0; shard < 32; shard++) {
+            List<Integer> values = new ArrayList<Integer>();
+            for (int i = 0; i < 20000; i++)
+                values.add(r.nextInt());
+            expected.addAll(values);
+            shards.add(new SortedArrayList<Integer>(values));
+        }
+        Collections.sort(expected);
+
+        long startTime = System.currentTimeMillis();
+        SortedArrayList<Integer> repeated = new SortedArrayList<Integer>();
+        for (SortedArrayList<Integer> shard : shards)
+            repeated.addAll(shard);
+        long repeatedTime = System.currentTimeMillis() - startTime;
+
+        startTime = System.currentTimeMillis();
+        SortedArrayList<Integer> merged = SortedArrayList.merge(null, shards);
+        long mergeTime = System.currentTimeMillis() - startTime;
+        System.out.println("Time taken to combine 32 shards: addAll [" + repeatedTime + "ms], merge [" + mergeTime + "ms]");
+
+        Assert.assertEquals(expected, repeated);
+        Assert.assertEquals(expected, merged);
+    }
+
+    @Test
+    public void testAddAllSpeed() {
+        List<Integer> initial = new ArrayList<Integer>();
+        for (int i = 0; i < 1000000; i++)
+            initial.add(i * 2);
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(initial);
+
+        Random r = new Random(5);
+        List<Integer> batch = new ArrayList<Integer>();
+        for (int i = 0; i < 10000; i++)
+            batch.add(1000000 + r.nextInt(1000000));
+
+        long startTime = System.nanoTime();
+        list.addAll(batch);
+        long endTime = System.nanoTime();
+        System.out.println("Time taken to merge 10k elements into 1M elements: [" + (endTime - startTime) / 1000000L + "ms]");
+
+        batch.clear();
+        for (int i = 0; i < 10000; i++)
+            batch.add(3000000 + i);
+        startTime = System.nanoTime();
+        list.addAll(batch);
+        endTime = System.nanoTime();
+        System.out.println("Time taken to append 10k elements to 1M elements: [" + (endTime - startTime) / 1000000L + "ms]");
+
+        for (int i = 1; i < list.size(); i++)
+            Assert.assertTrue(list.get(i - 1) <= list.get(i));
+    }
+
+    @Test
+    public void testSearch() {
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(Arrays.asList(-10, 5, 4, 3, 7, 3));
+        Assert.assertTrue(list.contains(3));
+        Assert.assertTrue(list.contains(-10));
+        Assert.assertFalse(list.contains(6));
+        Assert.assertFalse(list.contains(null));
+        Assert.assertFalse(list.contains("3"));
+        Assert.assertFalse(list.contains(new Object()));
+        Assert.assertEquals(1, list.indexOf(3));
+        Assert.assertEquals(2, list.lastIndexOf(3));
+        Assert.assertEquals(-1, list.indexOf(100));
+        Assert.assertEquals(-1, new SortedArrayList<Integer>().indexOf(1));
+
+        Assert.assertTrue(list.remove((Object) 3));
+        Assert.assertFalse(list.remove((Object) 6));
+        Assert.assertArrayEquals(new Integer[]{-10, 3, 4, 5, 7}, list.toArray(new Integer[list.size()]));
+    }
+
+    @Test
+    public void testSearchWithEqualKeys() {
+        // Compare on the first character only, so that equal keys hold different elements.
+        Comparator<String> firstChar = new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return o1.charAt(0) - o2.charAt(0);
+            }
+        };
+        SortedArrayList<String> list = new SortedArrayList<String>(firstChar, Arrays.asList("a1", "b1", "b2", "b1", "c1"));
+        Assert.assertEquals(1, list.indexOf("b1"));
+        Assert.assertEquals(3, list.lastIndexOf("b1"));
+        Assert.assertEquals(2, list.indexOf("b2"));
+        Assert.assertFalse(list.contains("b3"));
+    }
+
+    @Test
+    public void testNavigation() {
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(Arrays.asList(10, 20, 20, 30));
+        Assert.assertEquals(Integer.valueOf(20), list.floor(25));
+        Assert.assertEquals(Integer.valueOf(20), list.floor(20));
+        Assert.assertNull(list.floor(5));
+        Assert.assertEquals(Integer.valueOf(30), list.ceiling(25));
+        Assert.assertEquals(Integer.valueOf(20), list.ceiling(20));
+        Assert.assertNull(list.ceiling(31));
+        Assert.assertEquals(Integer.valueOf(10), list.lower(20));
+        Assert.assertNull(list.lower(10));
+        Assert.assertEquals(Integer.valueOf(30), list.higher(20));
+        Assert.assertNull(list.higher(30));
+    }
+
+    @Test
+    public void testRangeViews() {
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(Arrays.asList(10, 20, 20, 30, 40));
+        Assert.assertEquals(Arrays.asList(20, 20, 30), list.subList(20, true, 30, true));
+        Assert.assertEquals(Arrays.asList(30), list.subList(20, false, 40, false));
+        Assert.assertEquals(Collections.<Integer>emptyList(), list.subList(21, true, 29, true));
+        Assert.assertEquals(Arrays.asList(10, 20, 20), list.headList(30, false));
+        Assert.assertEquals(Arrays.asList(10, 20, 20, 30), list.headList(30, true));
+        Assert.assertEquals(Arrays.asList(30, 40), list.tailList(20, false));
+        Assert.assertEquals(Arrays.asList(20, 20, 30, 40), list.tailList(20, true));
+
+        // The views are backed by the list.
+        List<Integer> view = list.tailList(30, true);
+        view.clear();
+        Assert.assertEquals(Arrays.asList(10, 20, 20), list);
+
+        try {
+            list.subList(30, true, 20, true);
+            Assert.fail("fromKey > toKey must not be accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        try {
+            list.headList(20, true).add(15);
+            Assert.fail("Insertion through a view must not be permitted");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
     @Test
     public void testRandom() {
         Random r = new Random(System.currentTimeMillis());
@@ -0,0 +1,158 @@
+package org.colossaldb.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Test class for SortedIntArray, SortedLongArray and SortedDoubleArray.
+ */
+public class SortedPrimitiveArrayTest {
+
+    @Test
+    public void testIntAddAndAddAll() {
+        SortedIntArray array = new SortedIntArray(new int[]{-10, 5, 4, 3, 7, 3});
+        Assert.assertArrayEquals(new int[]{-10, 3, 3, 4, 5, 7}, array.toArray());
+
+        array.add(-22);
+        array.add(6);
+        array.add(22);
+        Assert.assertArrayEquals(new int[]{-22, -10, 3, 3, 4, 5, 6, 7, 22}, array.toArray());
+
+        array.addAll(new int[]{-44, 8, 8, 3, 6});
+        Assert.assertArrayEquals(new int[]{-44, -22, -10, 3, 3, 3, 4, 5, 6, 6, 7, 8, 8, 22}, array.toArray());
+
+        // Appended batch
+        array.addAll(new int[]{30, 23});
+        Assert.assertArrayEquals(new int[]{-44, -22, -10, 3, 3, 3, 4, 5, 6, 6, 7, 8, 8, 22, 23, 30}, array.toArray());
+        Assert.assertFalse(array.addAll(new int[0]));
+        Assert.assertFalse(array.addAll(null));
+    }
+
+    @Test
+    public void testIntSearchAndRemove() {
+        SortedIntArray array = new SortedIntArray(new int[]{10, 20, 20, 30});
+        Assert.assertTrue(array.contains(20));
+        Assert.assertFalse(array.contains(25));
+        Assert.assertEquals(1, array.indexOf(20));
+        Assert.assertEquals(2, array.lastIndexOf(20));
+        Assert.assertEquals(-1, array.indexOf(5));
+        Assert.assertEquals(3, array.ceilingIndex(25));
+        Assert.assertEquals(3, array.higherIndex(20));
+        Assert.assertEquals(4, array.higherIndex(30));
+
+        Assert.assertTrue(array.remove(20));
+        Assert.assertFalse(array.remove(25));
+        Assert.assertEquals(10, array.removeAt(0));
+        Assert.assertArrayEquals(new int[]{20, 30}, array.toArray());
+        Assert.assertEquals(30, array.get(1));
+        try {
+            array.get(2);
+            Assert.fail("Index out of range");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testLongRandomBatches() {
+        Random r = new Random(System.currentTimeMillis());
+        SortedLongArray array = new SortedLongArray();
+        List<Long> expected = new ArrayList<Long>();
+        for (int round = 0; round < 200; round++) {
+            long[] batch = new long[r.nextInt(round % 10 == 0 ? 500 : 5) + 1];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = r.nextLong() % 10000;
+                expected.add(batch[i]);
+            }
+            if (batch.length == 1)
+                array.add(batch[0]);
+            else
+                array.addAll(batch);
+        }
+
+        SortedArrayList<Long> reference = new SortedArrayList<Long>(expected);
+        Assert.assertEquals(reference.size(), array.size());
+        for (int i = 0; i < reference.size(); i++)
+            Assert.assertEquals(reference.get(i).longValue(), array.get(i));
+    }
+
+    @Test
+    public void testDoubleOrdering() {
+        SortedDoubleArray array = new SortedDoubleArray(new double[]{Double.NaN, 1.5, -0.0, 0.0, Double.NEGATIVE_INFINITY});
+        array.add(-2.5);
+        Assert.assertArrayEquals(new double[]{Double.NEGATIVE_INFINITY, -2.5, -0.0, 0.0, 1.5, Double.NaN}, array.toArray(), 0);
+        Assert.assertTrue(array.contains(Double.NaN));
+        Assert.assertEquals(2, array.indexOf(-0.0));
+        Assert.assertEquals(3, array.indexOf(0.0));
+        Assert.assertEquals(new SortedDoubleArray(array.toArray()), array);
+    }
+
+    @Test
+    public void testSpeedAgainstSortedArrayList() {
+        Random r = new Random(3);
+        final int size = 1000000;
+        int[] values = new int[size];
+        List<Integer> boxed = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            values[i] = r.nextInt();
+            boxed.add(values[i]);
+        }
+        int[] batch = new int[10000];
+        List<Integer> boxedBatch = new ArrayList<Integer>(batch.length);
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = r.nextInt();
+            boxedBatch.add(batch[i]);
+        }
+
+        long startTime = System.nanoTime();
+        SortedIntArray array = new SortedIntArray(values);
+        array.addAll(batch);
+        int found = 0;
+        for (int value : batch) {
+            if (array.contains(value))
+                found++;
+        }
+        long endTime = System.nanoTime();
+        System.out.println("Time taken using SortedIntArray: [" + (endTime - startTime) / 1000000L + "ms]");
+
+        startTime = System.nanoTime();
+        SortedArrayList<Integer> list = new SortedArrayList<Integer>(boxed);
+        list.addAll(boxedBatch);
+        int boxedFound = 0;
+        for (Integer value : boxedBatch) {
+            if (list.contains(value))
+                boxedFound++;
+        }
+        endTime = System.nanoTime();
+        System.out.println("Time taken using SortedArrayList<Integer>: [" + (endTime - startTime) / 1000000L + "ms]");
+
+        Assert.assertEquals(batch.length, found);
+        Assert.assertEquals(found, boxedFound);
+        Assert.assertEquals(list.size(), array.size());
+        for (int i = 0; i < list.size(); i += 997)
+            Assert.assertEquals(list.get(i).intValue(), array.get(i));
+        Assert.assertEquals(Arrays.toString(new int[]{1, 2}), new SortedIntArray(new int[]{2, 1}).toString());
+    }
+}
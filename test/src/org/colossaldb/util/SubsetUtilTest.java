@@ -0,0 +1,159 @@
+package org.colossaldb.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Test class for the bit mask subset enumerations.
+ */
+public class SubsetUtilTest {
+
+    @Test
+    public void testPowerSet() {
+        final List<Long> masks = new ArrayList<Long>();
+        Assert.assertTrue(SubsetUtil.forEachSubset(10, new LongSubsetVisitor() {
+            @Override
+            public boolean visit(long mask) {
+                masks.add(mask);
+                return true;
+            }
+        }));
+        Assert.assertEquals(1024, masks.size());
+        for (int i = 0; i < masks.size(); i++)
+            Assert.assertEquals(i, masks.get(i).longValue());
+    }
+
+    @Test
+    public void testSubsetsOfSizeMatchCombinations() {
+        final List<Integer> items = Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        for (int k = 1; k <= items.size(); k++) {
+            final Set<Collection<Integer>> actual = new HashSet<Collection<Integer>>();
+            final long[] previous = {-1};
+            final int size = k;
+            SubsetUtil.forEachSubsetOfSize(items.size(), k, new LongSubsetVisitor() {
+                @Override
+                public boolean visit(long mask) {
+                    Assert.assertEquals(size, Long.bitCount(mask));
+                    Assert.assertTrue("Masks must increase", mask > previous[0]);
+                    previous[0] = mask;
+                    actual.add(new SortedArrayList<Integer>(SubsetUtil.elements(items, mask)));
+                    return true;
+                }
+            });
+            Assert.assertEquals(CombinatoricUtil.combinations(items, k), actual);
+        }
+    }
+
+    @Test
+    public void testSizeRange() {
+        final int[] count = new int[1];
+        SubsetUtil.forEachSubset(12, 3, 5, new LongSubsetVisitor() {
+            @Override
+            public boolean visit(long mask) {
+                int size = Long.bitCount(mask);
+                Assert.assertTrue(size >= 3 && size <= 5);
+                count[0]++;
+                return true;
+            }
+        });
+        Assert.assertEquals(CombinatoricUtil.binomial(12, 3) + CombinatoricUtil.binomial(12, 4) + CombinatoricUtil.binomial(12, 5), count[0]);
+    }
+
+    @Test
+    public void testSixtyFourElements() {
+        final int[] count = new int[1];
+        LongSubsetVisitor counter = new LongSubsetVisitor() {
+            @Override
+            public boolean visit(long mask) {
+                count[0]++;
+                return true;
+            }
+        };
+        SubsetUtil.forEachSubsetOfSize(64, 1, counter);
+        Assert.assertEquals(64, count[0]);
+
+        count[0] = 0;
+        SubsetUtil.forEachSubsetOfSize(64, 63, counter);
+        Assert.assertEquals(64, count[0]);
+
+        count[0] = 0;
+        SubsetUtil.forEachSubsetOfSize(64, 2, counter);
+        Assert.assertEquals(2016, count[0]);
+
+        // Early termination, the power set of 64 elements cannot be walked.
+        count[0] = 0;
+        Assert.assertFalse(SubsetUtil.forEachSubset(64, new LongSubsetVisitor() {
+            @Override
+            public boolean visit(long mask) {
+                return ++count[0] < 1000;
+            }
+        }));
+        Assert.assertEquals(1000, count[0]);
+    }
+
+    @Test
+    public void testBitSetSubsets() {
+        final int[] count = new int[1];
+        final Set<BitSet> seen = new HashSet<BitSet>();
+        SubsetUtil.forEachBitSetSubsetOfSize(70, 2, new BitSetSubsetVisitor() {
+            @Override
+            public boolean visit(BitSet subset) {
+                Assert.assertEquals(2, subset.cardinality());
+                Assert.assertTrue(seen.add((BitSet) subset.clone()));
+                count[0]++;
+                return true;
+            }
+        });
+        Assert.assertEquals(2415, count[0]);
+
+        count[0] = 0;
+        SubsetUtil.forEachBitSetSubset(10, new BitSetSubsetVisitor() {
+            @Override
+            public boolean visit(BitSet subset) {
+                Assert.assertEquals(count[0]++, subset.isEmpty() ? 0 : subset.toLongArray()[0]);
+                return true;
+            }
+        });
+        Assert.assertEquals(1024, count[0]);
+    }
+
+    @Test
+    public void testElementViews() {
+        List<Character> items = Arrays.asList('a', 'b', 'c', 'd', 'e');
+        List<Character> view = SubsetUtil.elements(items, 0x15L);
+        Assert.assertEquals(Arrays.asList('a', 'c', 'e'), view);
+        Assert.assertEquals(Character.valueOf('c'), view.get(1));
+        Assert.assertTrue(SubsetUtil.elements(items, 0L).isEmpty());
+
+        BitSet subset = new BitSet();
+        subset.set(1);
+        subset.set(3);
+        Assert.assertEquals(Arrays.asList('b', 'd'), SubsetUtil.elements(items, subset));
+
+        try {
+            SubsetUtil.elements(items, 1L << 5);
+            Assert.fail("Element 5 does not exist");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
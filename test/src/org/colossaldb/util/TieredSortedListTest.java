@@ -0,0 +1,158 @@
+package org.colossaldb.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ * Copyright (C) 2013  Jayaprakash Pasala
+ * <p/>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ * <p/>
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p/>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Test class for TieredSortedList.
+ */
+public class TieredSortedListTest {
+
+    @Test
+    public void testAddAndAddAll() {
+        TieredSortedList<Integer> list = new TieredSortedList<Integer>(Arrays.asList(-10, 5, 4, 3, 7, 3));
+        Assert.assertEquals(Arrays.asList(-10, 3, 3, 4, 5, 7), list);
+        list.add(-22);
+        list.add(6);
+        list.add(22);
+        list.addAll(Arrays.asList(-44, 8, 8, 3, 6));
+        Assert.assertEquals(Arrays.asList(-44, -22, -10, 3, 3, 3, 4, 5, 6, 6, 7, 8, 8, 22), list);
+        Assert.assertFalse(list.addAll(null));
+        try {
+            list.add(0, 1);
+            Assert.fail("Insertion at a position must not be permitted");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRandomOperationsAgainstSortedArrayList() {
+        Random r = new Random(System.currentTimeMillis());
+        TieredSortedList<Integer> list = new TieredSortedList<Integer>();
+        SortedArrayList<Integer> reference = new SortedArrayList<Integer>();
+        for (int i = 0; i < 20000; i++) {
+            int operation = r.nextInt(100);
+            if (operation < 60) {
+                int value = r.nextInt(5000);
+                list.add(value);
+                reference.add(value);
+            } else if (operation < 85 && !reference.isEmpty()) {
+                int index = r.nextInt(reference.size());
+                Assert.assertEquals(reference.remove(index), list.remove(index));
+            } else if (operation < 99) {
+                Integer value = r.nextInt(5000);
+                Assert.assertEquals(reference.remove(value), list.remove(value));
+            } else {
+                List<Integer> batch = new ArrayList<Integer>();
+                for (int j = r.nextInt(3000); j > 0; j--)
+                    batch.add(r.nextInt(5000));
+                list.addAll(batch);
+                reference.addAll(batch);
+            }
+        }
+
+        Assert.assertEquals(reference.size(), list.size());
+        Assert.assertEquals(reference, list);
+        for (int i = 0; i < reference.size(); i += 7)
+            Assert.assertEquals(reference.get(i), list.get(i));
+        for (int value = 0; value < 5000; value += 13)
+            Assert.assertEquals(reference.indexOf(value), list.indexOf(value));
+    }
+
+    @Test
+    public void testBlockSizeFollowsSize() {
+        Assert.assertEquals(TieredSortedList.MIN_BLOCK_SIZE, TieredSortedList.blockSizeFor(0));
+        Assert.assertEquals(TieredSortedList.MIN_BLOCK_SIZE, TieredSortedList.blockSizeFor(16383));
+        Assert.assertEquals(128, TieredSortedList.blockSizeFor(16384));
+        Assert.assertEquals(512, TieredSortedList.blockSizeFor(1000000));
+        Assert.assertEquals(32768, TieredSortedList.blockSizeFor(Integer.MAX_VALUE));
+
+        // Grow through a few block sizes one insert at a time, then shrink back down.
+        Random r = new Random(5);
+        TieredSortedList<Integer> list = new TieredSortedList<Integer>();
+        SortedArrayList<Integer> reference = new SortedArrayList<Integer>();
+        for (int i = 0; i < 70000; i++) {
+            int value = r.nextInt(100000);
+            list.add(value);
+            reference.add(value);
+        }
+        Assert.assertEquals(reference, list);
+        while (reference.size() > 100) {
+            int index = r.nextInt(reference.size());
+            Assert.assertEquals(reference.remove(index), list.remove(index));
+        }
+        Assert.assertEquals(reference, list);
+        for (int i = 0; i < reference.size(); i++)
+            Assert.assertEquals(reference.get(i), list.get(i));
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 5000; i++)
+            values.add(i);
+        TieredSortedList<Integer> list = new TieredSortedList<Integer>(values);
+
+        // Remove the odd values through the iterator.
+        for (Iterator<Integer> iterator = list.iterator(); iterator.hasNext(); ) {
+            if (iterator.next() % 2 == 1)
+                iterator.remove();
+        }
+        Assert.assertEquals(2500, list.size());
+        for (int i = 0; i < list.size(); i++)
+            Assert.assertEquals(Integer.valueOf(i * 2), list.get(i));
+    }
+
+    @Test
+    public void testSingleInsertSpeed() {
+        // Both the lists are built in bulk, then take a stream of single inserts. The array shifts half of the list
+        // on every insert, the tiered list shifts at most a block.
+        Random r = new Random(11);
+        final int inserts = 5000;
+        for (int size = 1000; size <= 1000000; size *= 10) {
+            List<Integer> initial = new ArrayList<Integer>(size);
+            for (int i = 0; i < size; i++)
+                initial.add(r.nextInt());
+            int[] values = new int[inserts];
+            for (int i = 0; i < inserts; i++)
+                values[i] = r.nextInt();
+
+            SortedArrayList<Integer> array = new SortedArrayList<Integer>(initial);
+            long startTime = System.nanoTime();
+            for (int value : values)
+                array.add(value);
+            long arrayTime = System.nanoTime() - startTime;
+
+            TieredSortedList<Integer> tiered = new TieredSortedList<Integer>(initial);
+            startTime = System.nanoTime();
+            for (int value : values)
+                tiered.add(value);
+            long tieredTime = System.nanoTime() - startTime;
+
+            System.out.println("Time taken for " + inserts + " inserts into " + size + " elements: SortedArrayList ["
+                    + arrayTime / 1000000L + "ms], TieredSortedList [" + tieredTime / 1000000L + "ms]");
+            Assert.assertEquals(array.size(), tiered.size());
+            Assert.assertEquals(array.get(size / 2), tiered.get(size / 2));
+        }
+    }
+}